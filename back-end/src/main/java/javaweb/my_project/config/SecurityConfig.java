@@ -1,5 +1,6 @@
 package javaweb.my_project.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -27,7 +28,9 @@ public class SecurityConfig {
     private final String[] POST_PUBLIC_ROUTES = {"/auth/**", "/", "/login"};
     private final String[] GET_PUBLIC_ROUTES = {"/auth/**", "/", "/login", "/api/products/**", "/api/farmers/**",
             "/api/categories/**", "/api/market-prices/**",
-            "/api/payments/vnpay-return", "/api/payments/vnpay-ipn"};
+            "/api/payments/vnpay-return", "/api/payments/vnpay-ipn",
+            // Xác thực bằng token stream ngắn hạn trong controller (EventSource không gửi header)
+            "/api/payments/order/*/status/stream"};
 
     @Autowired
     public JwtDecoder jwtDecoder;
@@ -51,7 +54,11 @@ public class SecurityConfig {
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH","OPTIONS"));
 
         // Cho phép tất cả các headers
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "If-None-Match",
+                "If-Modified-Since", "Idempotency-Key"));
+
+        // Cho phép client đọc ETag/Last-Modified để gửi conditional GET
+        configuration.setExposedHeaders(Arrays.asList("ETag", "Last-Modified", "Content-Disposition"));
 
         // Không cần cấu hình allowCredentials nếu cho phép mọi nguồn mà không cần gửi cookie
         configuration.setAllowCredentials(false);
@@ -68,6 +75,8 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable) // Disable CSRF if not needed
                 .cors(cors -> cors.configurationSource(corsConfigurationSource())) // Enable CORS with your configuration
                 .authorizeHttpRequests(auth -> auth
+                        // Dispatch async khi stream SSE kết thúc: request gốc đã được xác thực
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(HttpMethod.POST, POST_PUBLIC_ROUTES).permitAll()
                         .requestMatchers(HttpMethod.GET, GET_PUBLIC_ROUTES).permitAll()
                         .anyRequest().authenticated()
@@ -23,4 +23,6 @@ public class VNPayConfig {
     private String command;
     @Value("${app.vnpay.order-type}")
     private String orderType;
+    @Value("${app.vnpay.query-url:https://sandbox.vnpayment.vn/merchant_webapi/api/transaction}")
+    private String queryUrl;
 }
\ No newline at end of file
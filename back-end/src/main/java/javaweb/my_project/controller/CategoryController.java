@@ -2,6 +2,7 @@ package javaweb.my_project.controller;
 
 import jakarta.validation.Valid;
 import javaweb.my_project.dto.api.ApiResponse;
+import javaweb.my_project.dto.api.ResourceVersion;
 import javaweb.my_project.dto.category.CategoryRequest;
 import javaweb.my_project.dto.category.CategoryTreeNode;
 import javaweb.my_project.dto.category.CategoryUpdateRequest;
@@ -12,6 +13,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -33,7 +35,11 @@ public class CategoryController {
     }
 
     @GetMapping
-    public ResponseEntity<ApiResponse<List<CategoryTreeNode>>> getTree(){
+    public ResponseEntity<ApiResponse<List<CategoryTreeNode>>> getTree(WebRequest webRequest){
+        ResourceVersion version = categoryService.getTreeVersion();
+        if (webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
         ApiResponse<List<CategoryTreeNode>> apiResponse =  ApiResponse.<List<CategoryTreeNode>>builder()
                 .code("category-s-02")
                 .message("Get category tre successfully")
@@ -4,17 +4,25 @@ import jakarta.validation.Valid;
 import javaweb.my_project.dto.address.AddressRequest;
 import javaweb.my_project.dto.address.AddressResponse;
 import javaweb.my_project.dto.api.ApiResponse;
+import javaweb.my_project.dto.api.ResourceVersion;
+import javaweb.my_project.dto.farmer.AnalyticsRebuildResponse;
 import javaweb.my_project.dto.farmer.ChangeFarmerStatusRequest;
+import javaweb.my_project.dto.farmer.FarmerAnalyticsResponse;
 import javaweb.my_project.dto.farmer.FarmerUpdateInfoPatchRequest;
 import javaweb.my_project.dto.farmer.FarmerUpdateInfoPutRequest;
 import javaweb.my_project.dto.farmer.FarmerResponse;
+import javaweb.my_project.enums.AnalyticsGranularity;
+import javaweb.my_project.service.FarmerAnalyticsService;
 import javaweb.my_project.service.FarmerService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -23,10 +31,15 @@ import java.util.List;
 //@PreAuthorize("authenticated()")
 public class FarmerController {
     private final FarmerService farmerService;
+    private final FarmerAnalyticsService farmerAnalyticsService;
 
     @GetMapping("/{id}")
     @PreAuthorize("permitAll()")
-    public ResponseEntity<ApiResponse<FarmerResponse>> getFarmer(@PathVariable("id") String id) {
+    public ResponseEntity<ApiResponse<FarmerResponse>> getFarmer(@PathVariable("id") String id, WebRequest webRequest) {
+        ResourceVersion version = farmerService.getFarmerVersion(id);
+        if (webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        }
         ApiResponse<FarmerResponse> apiResponse = ApiResponse.<FarmerResponse>builder()
                 .code("farmer-s-01")
                 .message("Get farmer successfully")
@@ -46,6 +59,32 @@ public class FarmerController {
         return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
     }
 
+    // Thống kê doanh số đọc từ bảng rollup, from/to theo ngày đặt đơn (bao gồm cả hai đầu)
+    @GetMapping("/owner/analytics")
+    @PreAuthorize("hasRole(\'FARMER\')")
+    public ResponseEntity<ApiResponse<FarmerAnalyticsResponse>> getAnalyticsByOwner(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") AnalyticsGranularity granularity) {
+        ApiResponse<FarmerAnalyticsResponse> apiResponse = ApiResponse.<FarmerAnalyticsResponse>builder()
+                .code("farmer-s-10")
+                .message("Get farmer analytics successfully")
+                .data(farmerAnalyticsService.getAnalyticsOfFarmer(from, to, granularity))
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+
+    @PostMapping("/admin/analytics/rebuild")
+    @PreAuthorize("hasRole(\'ADMIN\')")
+    public ResponseEntity<ApiResponse<AnalyticsRebuildResponse>> rebuildAnalytics() {
+        ApiResponse<AnalyticsRebuildResponse> apiResponse = ApiResponse.<AnalyticsRebuildResponse>builder()
+                .code("farmer-s-11")
+                .message("Rebuild farmer analytics successfully")
+                .data(farmerAnalyticsService.rebuild())
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+
     @GetMapping
     @PreAuthorize("hasRole(\'ADMIN\')")
     public ResponseEntity<ApiResponse<List<FarmerResponse>>> getAllFarmers() {
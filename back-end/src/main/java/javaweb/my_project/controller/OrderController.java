@@ -2,9 +2,16 @@ package javaweb.my_project.controller;
 
 import jakarta.validation.Valid;
 import javaweb.my_project.dto.api.ApiResponse;
+import javaweb.my_project.dto.api.PageResponse;
+import javaweb.my_project.dto.order.BulkChangeOrderStatusRequest;
+import javaweb.my_project.dto.order.BulkChangeOrderStatusResponse;
 import javaweb.my_project.dto.order.ChangeOrderStatusRequest;
+import javaweb.my_project.dto.order.CheckoutRequest;
+import javaweb.my_project.dto.order.CheckoutResponse;
+import javaweb.my_project.dto.order.OrderHistoryFilter;
 import javaweb.my_project.dto.order.OrderRequest;
 import javaweb.my_project.dto.order.OrderResponse;
+import javaweb.my_project.service.IdempotencyService;
 import javaweb.my_project.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -19,13 +26,32 @@ import java.util.List;
 @RequiredArgsConstructor
 public class OrderController {
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
 
+    // Client gửi lại với cùng Idempotency-Key nhận lại đơn đã tạo thay vì tạo đơn mới
     @PostMapping
-    public ResponseEntity<ApiResponse<OrderResponse>> create(@RequestBody @Valid OrderRequest request) {
+    public ResponseEntity<ApiResponse<OrderResponse>> create(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid OrderRequest request) {
         ApiResponse<OrderResponse> apiResponse = ApiResponse.<OrderResponse>builder()
                 .code("order-s-01")
                 .message("Create order successfully")
-                .data(orderService.create(request))
+                .data(idempotencyService.execute("order", idempotencyKey, request, OrderResponse.class,
+                        () -> orderService.create(request)))
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+
+    // Checkout cả giỏ hàng có sản phẩm của nhiều farmer, mỗi farmer một đơn
+    @PostMapping("/checkout")
+    public ResponseEntity<ApiResponse<CheckoutResponse>> checkout(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid CheckoutRequest request) {
+        ApiResponse<CheckoutResponse> apiResponse = ApiResponse.<CheckoutResponse>builder()
+                .code("order-s-08")
+                .message("Checkout successfully")
+                .data(idempotencyService.execute("checkout", idempotencyKey, request, CheckoutResponse.class,
+                        () -> orderService.checkout(request)))
                 .build();
         return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
     }
@@ -40,6 +66,63 @@ public class OrderController {
         return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
     }
 
+    // Lịch sử đơn hàng phân trang theo cursor, lọc theo status và khoảng ngày from/to (yyyy-MM-dd)
+    @GetMapping("/account/history")
+    public ResponseEntity<ApiResponse<PageResponse<OrderResponse>>> getMyOrderHistory(
+            OrderHistoryFilter filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        ApiResponse<PageResponse<OrderResponse>> apiResponse = ApiResponse.<PageResponse<OrderResponse>>builder()
+                .code("order-s-09")
+                .message("Get order history successfully")
+                .data(orderService.getHistoryOfAccount(filter, cursor, size))
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+
+    @GetMapping("/farmer/history")
+    @PreAuthorize("hasRole('FARMER')")
+    public ResponseEntity<ApiResponse<PageResponse<OrderResponse>>> getFarmerOrderHistory(
+            OrderHistoryFilter filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        ApiResponse<PageResponse<OrderResponse>> apiResponse = ApiResponse.<PageResponse<OrderResponse>>builder()
+                .code("order-s-10")
+                .message("Get order history by farmer successfully")
+                .data(orderService.getHistoryOfFarmer(filter, cursor, size))
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+
+    @GetMapping("/farmer/{farmerId}/history")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<PageResponse<OrderResponse>>> getOrderHistoryByFarmerId(
+            @PathVariable("farmerId") String farmerId,
+            OrderHistoryFilter filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        ApiResponse<PageResponse<OrderResponse>> apiResponse = ApiResponse.<PageResponse<OrderResponse>>builder()
+                .code("order-s-11")
+                .message("Get order history by farmer id successfully")
+                .data(orderService.getHistoryByFarmerId(farmerId, filter, cursor, size))
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+
+    @GetMapping("/history")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<PageResponse<OrderResponse>>> getOrderHistory(
+            OrderHistoryFilter filter,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        ApiResponse<PageResponse<OrderResponse>> apiResponse = ApiResponse.<PageResponse<OrderResponse>>builder()
+                .code("order-s-12")
+                .message("Get order history successfully")
+                .data(orderService.getHistory(filter, cursor, size))
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<OrderResponse>> getOrderById(@PathVariable("id") String id) {
         ApiResponse<OrderResponse> apiResponse = ApiResponse.<OrderResponse>builder()
@@ -105,4 +188,17 @@ public class OrderController {
                 .build();
         return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
     }
+
+    // Chuyển trạng thái nhiều đơn, trả về kết quả từng đơn (đơn lỗi không làm hỏng cả lô)
+    @PostMapping("/farmer/change-status/bulk")
+    @PreAuthorize("hasRole('FARMER')")
+    public ResponseEntity<ApiResponse<BulkChangeOrderStatusResponse>> farmerChangeStatusBulk(
+            @RequestBody @Valid BulkChangeOrderStatusRequest request) {
+        ApiResponse<BulkChangeOrderStatusResponse> apiResponse = ApiResponse.<BulkChangeOrderStatusResponse>builder()
+                .code("order-s-13")
+                .message("Change order status successfully")
+                .data(orderService.farmerChangeStatusBulk(request))
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
 }
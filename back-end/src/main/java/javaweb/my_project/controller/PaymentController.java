@@ -4,11 +4,17 @@ import jakarta.servlet.http.HttpServletRequest;
 import javaweb.my_project.dto.payment.PaymentCreationResponse;
 import javaweb.my_project.dto.api.ApiResponse;
 import javaweb.my_project.dto.order.OrderResponse;
+import javaweb.my_project.service.IdempotencyService;
 import javaweb.my_project.service.PaymentService;
+import javaweb.my_project.service.PaymentStatusNotifier;
+import javaweb.my_project.util.jwt.PaymentStreamTokenUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Map;
 
@@ -17,14 +23,19 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PaymentController {
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final PaymentStreamTokenUtil paymentStreamTokenUtil;
 
     @PostMapping("/create/{orderId}")
     public ResponseEntity<ApiResponse<PaymentCreationResponse>> createPaymentUrl(@PathVariable String orderId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             HttpServletRequest request) {
         ApiResponse<PaymentCreationResponse> apiResponse = ApiResponse.<PaymentCreationResponse>builder()
                 .code("payment-s-01")
                 .message("Create payment url successfully")
-                .data(paymentService.createPaymentUrl(orderId, request))
+                .data(idempotencyService.execute("payment", idempotencyKey, orderId, PaymentCreationResponse.class,
+                        () -> paymentService.createPaymentUrl(orderId, request)))
                 .build();
         return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
     }
@@ -41,7 +52,13 @@ public class PaymentController {
 
     @GetMapping("/vnpay-ipn")
     public ResponseEntity<Map<String, String>> paymentIpn(HttpServletRequest request) {
-        Map<String, String> response = paymentService.handleIpn(request);
+        Map<String, String> response;
+        try {
+            response = paymentService.handleIpn(request);
+        } catch (DataIntegrityViolationException e) {
+            // IPN trùng chạy song song đã ghi payment trước (unique transaction_id, order_id), transaction này đã rollback
+            response = Map.of("RspCode", "02", "Message", "Order already confirmed");
+        }
         HttpStatus status = "00".equals(response.get("RspCode")) ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
         return ResponseEntity.status(status).body(response);
     }
@@ -56,4 +73,22 @@ public class PaymentController {
                 .build();
         return ResponseEntity.ok(apiResponse);
     }
+
+    @PostMapping("/order/{orderId}/status/stream-token")
+    public ResponseEntity<ApiResponse<String>> createStatusStreamToken(@PathVariable String orderId) {
+        ApiResponse<String> apiResponse = ApiResponse.<String>builder()
+                .code("payment-s-04")
+                .message("Create payment status stream token successfully")
+                .data(paymentService.createStatusStreamToken(orderId))
+                .build();
+        return ResponseEntity.ok(apiResponse);
+    }
+
+    // Thay cho việc poll /status: đẩy trạng thái khi IPN/return commit, đóng stream khi hết PENDING.
+    // EventSource không gửi được header Authorization nên xác thực bằng token ngắn hạn trên query
+    @GetMapping(value = "/order/{orderId}/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPaymentStatus(@PathVariable String orderId, @RequestParam String token) {
+        paymentStreamTokenUtil.verifyToken(token, orderId);
+        return paymentStatusNotifier.subscribe(orderId);
+    }
 }
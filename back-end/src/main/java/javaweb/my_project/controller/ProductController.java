@@ -1,18 +1,29 @@
 package javaweb.my_project.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import javaweb.my_project.dto.api.ApiResponse;
 import javaweb.my_project.dto.api.PageResponse;
+import javaweb.my_project.dto.api.ResourceVersion;
+import javaweb.my_project.dto.cache.CacheStatsResponse;
+import javaweb.my_project.dto.cache.CounterStatsResponse;
 import javaweb.my_project.dto.ocop.OcopUpdateRequest;
 import javaweb.my_project.dto.product.*;
+import javaweb.my_project.service.ProductExportService;
+import javaweb.my_project.service.ProductImportService;
 import javaweb.my_project.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -20,6 +31,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ProductController {
         private final ProductService productService;
+        private final ProductImportService productImportService;
+        private final ProductExportService productExportService;
 
         @PostMapping
         @PreAuthorize("hasRole(\"FARMER\")")
@@ -32,11 +45,37 @@ public class ProductController {
                 return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
         }
 
+        // Body được đọc dạng stream theo từng dòng, không nạp toàn bộ file vào bộ nhớ
+        @PostMapping(value = "/bulk", consumes = { "text/csv", "application/x-ndjson" })
+        @PreAuthorize("hasRole(\"FARMER\")")
+        public ResponseEntity<ApiResponse<ProductImportResponse>> bulkImport(HttpServletRequest request)
+                        throws IOException {
+                ApiResponse<ProductImportResponse> apiResponse = ApiResponse.<ProductImportResponse>builder()
+                                .code("product-s-15")
+                                .message("Import products successfully")
+                                .data(productImportService.importProducts(request.getContentType(),
+                                                request.getInputStream()))
+                                .build();
+                return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+        }
+
+        // Truyền tham số cursor (rỗng cho trang đầu) để dùng phân trang keyset thay cho offset
         @GetMapping
         public ResponseEntity<ApiResponse<PageResponse<ProductTagResponse>>> getAllActiveProduct(
                         @RequestParam(defaultValue = "0") int page,
-                        @RequestParam(defaultValue = "12") int size) {
-                Page<ProductTagResponse> pagedProducts = productService.getAllActiveProduct(page, size);
+                        @RequestParam(defaultValue = "12") int size,
+                        @RequestParam(required = false) String cursor,
+                        @RequestParam(required = false) String categoryId) {
+                if (cursor != null) {
+                        ApiResponse<PageResponse<ProductTagResponse>> apiResponse = ApiResponse
+                                        .<PageResponse<ProductTagResponse>>builder()
+                                        .code("product-s-02")
+                                        .message("Get all product successfully")
+                                        .data(productService.getActiveProductFeed(cursor, size, categoryId))
+                                        .build();
+                        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+                }
+                Page<ProductTagResponse> pagedProducts = productService.getAllActiveProduct(page, size, categoryId);
                 PageResponse<ProductTagResponse> pageResponseProduct = PageResponse.<ProductTagResponse>builder()
                                 .content(pagedProducts.getContent())
                                 .page(pagedProducts.getNumber())
@@ -54,11 +93,54 @@ public class ProductController {
 
         @GetMapping("/admin")
         @PreAuthorize("hasRole(\"ADMIN\")")
-        public ResponseEntity<ApiResponse<List<ProductResponse>>> getAllByAdmin() {
-                ApiResponse<List<ProductResponse>> apiResponse = ApiResponse.<List<ProductResponse>>builder()
+        public ResponseEntity<ApiResponse<PageResponse<ProductResponse>>> getAllByAdmin(
+                        ProductAdminFilter filter,
+                        @RequestParam(defaultValue = "0") int page,
+                        @RequestParam(defaultValue = "20") int size) {
+                ApiResponse<PageResponse<ProductResponse>> apiResponse = ApiResponse
+                                .<PageResponse<ProductResponse>>builder()
                                 .code("product-s-03")
                                 .message("Get all product successfully")
-                                .data(productService.getAllByAdmin())
+                                .data(productService.getAllByAdmin(filter, page, size))
+                                .build();
+                return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+        }
+
+        // format=ndjson (mặc định) hoặc csv, dữ liệu được ghi dần ra response
+        @GetMapping("/admin/export")
+        @PreAuthorize("hasRole(\"ADMIN\")")
+        public ResponseEntity<StreamingResponseBody> exportByAdmin(
+                        ProductAdminFilter filter,
+                        @RequestParam(defaultValue = ProductExportService.FORMAT_NDJSON) String format) {
+                boolean csv = ProductExportService.FORMAT_CSV.equalsIgnoreCase(format);
+                StreamingResponseBody body = output -> productExportService.export(filter,
+                                csv ? ProductExportService.FORMAT_CSV : ProductExportService.FORMAT_NDJSON, output);
+                return ResponseEntity.status(HttpStatus.OK)
+                                .contentType(MediaType.parseMediaType(csv ? "text/csv" : "application/x-ndjson"))
+                                .header(HttpHeaders.CONTENT_DISPOSITION,
+                                                "attachment; filename=\"products." + (csv ? "csv" : "ndjson") + "\"")
+                                .body(body);
+        }
+
+        @GetMapping("/admin/cache-stats")
+        @PreAuthorize("hasRole(\"ADMIN\")")
+        public ResponseEntity<ApiResponse<CacheStatsResponse>> getCacheStats() {
+                ApiResponse<CacheStatsResponse> apiResponse = ApiResponse.<CacheStatsResponse>builder()
+                                .code("product-s-11")
+                                .message("Get product cache stats successfully")
+                                .data(productService.getCacheStats())
+                                .build();
+                return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+        }
+
+        // Độ sâu buffer sold/views đang chờ ghi xuống DB
+        @GetMapping("/admin/counter-stats")
+        @PreAuthorize("hasRole(\"ADMIN\")")
+        public ResponseEntity<ApiResponse<CounterStatsResponse>> getCounterStats() {
+                ApiResponse<CounterStatsResponse> apiResponse = ApiResponse.<CounterStatsResponse>builder()
+                                .code("product-s-16")
+                                .message("Get product counter stats successfully")
+                                .data(productService.getCounterStats())
                                 .build();
                 return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
         }
@@ -86,7 +168,14 @@ public class ProductController {
         }
 
         @GetMapping("/{id}")
-        public ResponseEntity<ApiResponse<ProductResponse>> getById(@PathVariable String id) {
+        public ResponseEntity<ApiResponse<ProductResponse>> getById(@PathVariable String id, WebRequest webRequest) {
+                // If-None-Match/If-Modified-Since khớp thì trả 304 trước khi load và map sản phẩm
+                ResourceVersion version = productService.getVersion(id);
+                // Lượt xem tính cả khi trả 304 (getVersion đã kiểm tra sản phẩm tồn tại)
+                productService.recordView(id);
+                if (webRequest.checkNotModified(version.getEtag(), version.getLastModified())) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+                }
                 ApiResponse<ProductResponse> apiResponse = ApiResponse.<ProductResponse>builder()
                                 .code("product-s-06")
                                 .message("Get product successfully")
@@ -95,6 +184,50 @@ public class ProductController {
                 return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
         }
 
+        @GetMapping("/{id}/views")
+        public ResponseEntity<ApiResponse<Long>> getViews(@PathVariable String id) {
+                ApiResponse<Long> apiResponse = ApiResponse.<Long>builder()
+                                .code("product-s-17")
+                                .message("Get product views successfully")
+                                .data(productService.getViews(id))
+                                .build();
+                return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+        }
+
+        @GetMapping("/search")
+        public ResponseEntity<ApiResponse<List<ProductTagResponse>>> search(
+                        @RequestParam("q") String query,
+                        @RequestParam(defaultValue = "20") int limit) {
+                ApiResponse<List<ProductTagResponse>> apiResponse = ApiResponse.<List<ProductTagResponse>>builder()
+                                .code("product-s-12")
+                                .message("Search product successfully")
+                                .data(productService.search(query, limit))
+                                .build();
+                return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+        }
+
+        @GetMapping("/facets")
+        public ResponseEntity<ApiResponse<ProductFacetResponse>> getFacets(ProductFacetRequest request) {
+                ApiResponse<ProductFacetResponse> apiResponse = ApiResponse.<ProductFacetResponse>builder()
+                                .code("product-s-14")
+                                .message("Get product facets successfully")
+                                .data(productService.getFacets(request))
+                                .build();
+                return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+        }
+
+        @GetMapping("/suggest")
+        public ResponseEntity<ApiResponse<List<ProductNameResponse>>> suggest(
+                        @RequestParam("q") String query,
+                        @RequestParam(defaultValue = "10") int limit) {
+                ApiResponse<List<ProductNameResponse>> apiResponse = ApiResponse.<List<ProductNameResponse>>builder()
+                                .code("product-s-13")
+                                .message("Suggest product successfully")
+                                .data(productService.suggest(query, limit))
+                                .build();
+                return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+        }
+
         @GetMapping("/names")
         public ResponseEntity<ApiResponse<List<ProductNameResponse>>> getProductNames() {
                 ApiResponse<List<ProductNameResponse>> apiResponse = ApiResponse.<List<ProductNameResponse>>builder()
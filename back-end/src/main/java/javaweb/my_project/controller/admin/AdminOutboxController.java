@@ -0,0 +1,38 @@
+package javaweb.my_project.controller.admin;
+
+import javaweb.my_project.dto.api.ApiResponse;
+import javaweb.my_project.dto.outbox.OutboxStatsResponse;
+import javaweb.my_project.service.OutboxDispatcher;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/outbox")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole(\"ADMIN\")")
+public class AdminOutboxController {
+    private final OutboxDispatcher outboxDispatcher;
+
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<OutboxStatsResponse>> getStats() {
+        ApiResponse<OutboxStatsResponse> apiResponse = ApiResponse.<OutboxStatsResponse>builder()
+                .code("admin-outbox-s-01")
+                .message("Get outbox stats successfully")
+                .data(outboxDispatcher.getStats())
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+
+    @PostMapping("/requeue-failed")
+    public ResponseEntity<ApiResponse<Integer>> requeueFailed() {
+        ApiResponse<Integer> apiResponse = ApiResponse.<Integer>builder()
+                .code("admin-outbox-s-02")
+                .message("Requeue failed outbox events successfully")
+                .data(outboxDispatcher.requeueFailed())
+                .build();
+        return ResponseEntity.status(HttpStatus.OK).body(apiResponse);
+    }
+}
@@ -1,5 +1,6 @@
 package javaweb.my_project.dto.api;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
@@ -10,9 +11,13 @@ import java.util.List;
 @Data
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class PageResponse<T> {
     List<T> content;
-    int page;
-    int totalPages;
-    long totalElements;
+    Integer page;
+    Integer totalPages;
+    Long totalElements;
+    // Chỉ dùng cho phân trang theo cursor (keyset), không có total count
+    String nextCursor;
+    Boolean hasNext;
 }
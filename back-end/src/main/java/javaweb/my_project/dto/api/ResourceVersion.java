@@ -0,0 +1,29 @@
+package javaweb.my_project.dto.api;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+// ETag + Last-Modified của một resource, dùng cho conditional GET (If-None-Match / If-Modified-Since)
+@Data
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ResourceVersion {
+    String etag;
+    long lastModified;
+
+    public static ResourceVersion of(String etag, LocalDateTime... updatedAts) {
+        LocalDateTime latest = null;
+        for (LocalDateTime updatedAt : updatedAts) {
+            if (updatedAt != null && (latest == null || updatedAt.isAfter(latest))) {
+                latest = updatedAt;
+            }
+        }
+        long lastModified = latest == null ? -1 : latest.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new ResourceVersion(etag, lastModified);
+    }
+}
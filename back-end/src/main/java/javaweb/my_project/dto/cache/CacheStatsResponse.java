@@ -0,0 +1,19 @@
+package javaweb.my_project.dto.cache;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CacheStatsResponse {
+    int size;
+    int maxSize;
+    long hits;
+    long misses;
+    long evictions;
+    long invalidations;
+    double hitRate;
+}
@@ -0,0 +1,22 @@
+package javaweb.my_project.dto.cache;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CounterStatsResponse {
+    // Số sản phẩm đang có delta chưa ghi xuống DB
+    int pendingProducts;
+    long pendingSold;
+    long pendingViews;
+    long flushes;
+    long flushedRows;
+    int lastFlushRows;
+    LocalDateTime lastFlushAt;
+}
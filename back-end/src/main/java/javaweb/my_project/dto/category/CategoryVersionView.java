@@ -0,0 +1,9 @@
+package javaweb.my_project.dto.category;
+
+import java.time.LocalDateTime;
+
+public interface CategoryVersionView {
+    Long getCount();
+
+    LocalDateTime getUpdatedAt();
+}
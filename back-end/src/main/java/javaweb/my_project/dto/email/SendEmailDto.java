@@ -2,9 +2,12 @@ package javaweb.my_project.dto.email;
 
 import lombok.Builder;
 import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
 
+// Được lưu dạng JSON trong outbox_event
 @Getter
 @Builder
+@Jacksonized
 public class SendEmailDto {
     String to;
     String subject;
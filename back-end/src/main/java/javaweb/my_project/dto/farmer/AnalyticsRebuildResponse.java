@@ -0,0 +1,15 @@
+package javaweb.my_project.dto.farmer;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class AnalyticsRebuildResponse {
+    int dailyRows;
+    int productRows;
+    long durationMs;
+}
@@ -0,0 +1,50 @@
+package javaweb.my_project.dto.farmer;
+
+import javaweb.my_project.enums.AnalyticsGranularity;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FarmerAnalyticsResponse {
+    LocalDate from;
+    LocalDate to;
+    AnalyticsGranularity granularity;
+    Point total;
+    // Một điểm cho mỗi kỳ trong khoảng, kể cả kỳ không có đơn
+    List<Point> series;
+    List<ProductSales> products;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Point {
+        // Ngày đầu kỳ (thứ Hai với WEEK, ngày 1 với MONTH)
+        LocalDate period;
+        long revenue;
+        long units;
+        long orders;
+        long receivedOrders;
+        long canceledOrders;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class ProductSales {
+        String productId;
+        String productName;
+        long revenue;
+        long units;
+        long orders;
+    }
+}
@@ -0,0 +1,9 @@
+package javaweb.my_project.dto.farmer;
+
+import java.time.LocalDateTime;
+
+public interface FarmerVersionView {
+    Long getVersion();
+
+    LocalDateTime getUpdatedAt();
+}
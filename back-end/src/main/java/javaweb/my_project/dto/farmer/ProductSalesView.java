@@ -0,0 +1,13 @@
+package javaweb.my_project.dto.farmer;
+
+public interface ProductSalesView {
+    String getProductId();
+
+    String getProductName();
+
+    Long getRevenue();
+
+    Long getUnits();
+
+    Long getOrderCount();
+}
@@ -0,0 +1,23 @@
+package javaweb.my_project.dto.order;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import javaweb.my_project.enums.OrderStatus;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkChangeOrderStatusRequest {
+    @NotEmpty(message = "At least one order is required")
+    @Size(max = 500, message = "Max 500 orders")
+    List<@NotBlank(message = "Order is required") String> orderIds;
+    @NotNull(message = "Order status is required")
+    OrderStatus status;
+    String reason;
+}
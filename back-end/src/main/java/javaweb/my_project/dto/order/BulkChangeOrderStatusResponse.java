@@ -0,0 +1,28 @@
+package javaweb.my_project.dto.order;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkChangeOrderStatusResponse {
+    int succeeded;
+    int failed;
+    List<Result> results;
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        String orderId;
+        boolean success;
+        // Mã lỗi và thông báo khi đơn không chuyển được trạng thái
+        String code;
+        String message;
+    }
+}
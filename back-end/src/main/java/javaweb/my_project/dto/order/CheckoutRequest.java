@@ -0,0 +1,27 @@
+package javaweb.my_project.dto.order;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import javaweb.my_project.enums.PaymentMethod;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CheckoutRequest {
+    String note;
+
+    @NotBlank(message = "Address is required")
+    String addressId;
+
+    @NotEmpty(message = "At least one order item is required")
+    List<OrderRequest.@Valid OrderItemDTO> items;
+
+    @NotNull(message = "Payment method is required")
+    PaymentMethod paymentMethod;
+}
@@ -0,0 +1,22 @@
+package javaweb.my_project.dto.order;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CheckoutResponse {
+    List<OrderResponse> orders;
+    Integer totalPrice;
+    // Dùng làm vnp_TxnRef khi tạo URL thanh toán VNPAY cho tất cả đơn (null với COD)
+    String paymentReference;
+}
@@ -0,0 +1,13 @@
+package javaweb.my_project.dto.order;
+
+public interface OrderContactView {
+    String getOrderId();
+
+    Integer getTotalPrice();
+
+    Integer getTotalQuantity();
+
+    String getConsumerEmail();
+
+    String getFarmerEmail();
+}
@@ -0,0 +1,22 @@
+package javaweb.my_project.dto.order;
+
+import javaweb.my_project.enums.OrderStatus;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OrderHistoryFilter {
+    OrderStatus status;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    LocalDate from;
+
+    // Bao gồm cả ngày "to"
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    LocalDate to;
+}
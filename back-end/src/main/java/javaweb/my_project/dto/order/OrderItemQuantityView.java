@@ -0,0 +1,9 @@
+package javaweb.my_project.dto.order;
+
+public interface OrderItemQuantityView {
+    String getOrderId();
+
+    String getProductId();
+
+    Integer getQuantity();
+}
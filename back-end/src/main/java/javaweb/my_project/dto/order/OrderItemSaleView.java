@@ -0,0 +1,21 @@
+package javaweb.my_project.dto.order;
+
+import java.time.LocalDateTime;
+
+public interface OrderItemSaleView {
+    String getOrderId();
+
+    String getFarmerId();
+
+    LocalDateTime getCreatedAt();
+
+    Integer getTotalPrice();
+
+    Integer getTotalQuantity();
+
+    String getProductId();
+
+    Integer getQuantity();
+
+    Integer getPrice();
+}
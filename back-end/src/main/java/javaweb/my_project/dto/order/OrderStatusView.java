@@ -0,0 +1,11 @@
+package javaweb.my_project.dto.order;
+
+public interface OrderStatusView {
+    String getId();
+
+    String getStatus();
+
+    String getPaymentStatus();
+
+    String getFarmerId();
+}
@@ -0,0 +1,28 @@
+package javaweb.my_project.dto.outbox;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OutboxStatsResponse {
+    // Số sự kiện PENDING (kể cả đang chờ retry)
+    long backlog;
+    // Số sự kiện đã hết lượt retry
+    long failed;
+    LocalDateTime oldestPendingAt;
+    // Tuổi của sự kiện PENDING lâu nhất
+    long lagSeconds;
+    long delivered;
+    long retries;
+    long deadLettered;
+    // Thời gian từ lúc ghi outbox tới lúc gửi xong, trung bình của lô gần nhất
+    long lastDeliveryLagMs;
+    int lastBatchSize;
+    LocalDateTime lastDispatchAt;
+}
@@ -0,0 +1,11 @@
+package javaweb.my_project.dto.payment;
+
+import java.time.LocalDateTime;
+
+public interface PendingPaymentView {
+    String getId();
+
+    String getPaymentReference();
+
+    LocalDateTime getPaymentRequestedAt();
+}
@@ -0,0 +1,37 @@
+package javaweb.my_project.dto.payment;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Result of a VNPAY querydr call (vnp_* fields of the response)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class VNPayQueryResult {
+    String txnRef;
+    String responseCode;
+    String message;
+    String transactionStatus;
+    String transactionNo;
+    // Số tiền x100 như VNPAY trả về
+    Long amount;
+    String bankCode;
+    String payDate;
+
+    public boolean isSuccess() {
+        return "00".equals(responseCode) && "00".equals(transactionStatus);
+    }
+
+    /**
+     * No money will arrive for this reference any more: VNPAY has no such transaction (91)
+     * or it ended unfinished (01) / with an error (02) after the payment link expired
+     */
+    public boolean isFailed() {
+        return "91".equals(responseCode)
+                || ("00".equals(responseCode) && ("01".equals(transactionStatus) || "02".equals(transactionStatus)));
+    }
+}
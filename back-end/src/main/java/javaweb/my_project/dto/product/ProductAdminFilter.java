@@ -0,0 +1,15 @@
+package javaweb.my_project.dto.product;
+
+import javaweb.my_project.enums.ProductStatus;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductAdminFilter {
+    ProductStatus status;
+    String categoryId;
+    String farmerId;
+    String keyword;
+}
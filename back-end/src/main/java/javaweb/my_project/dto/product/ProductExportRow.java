@@ -0,0 +1,31 @@
+package javaweb.my_project.dto.product;
+
+import javaweb.my_project.enums.OcopStatus;
+import javaweb.my_project.enums.ProductStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductExportRow {
+    String id;
+    String name;
+    String category;
+    String farmerId;
+    String farmer;
+    Integer price;
+    String unitPrice;
+    Integer inventory;
+    Integer sold;
+    Double rating;
+    ProductStatus status;
+    OcopStatus ocopStatus;
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,22 @@
+package javaweb.my_project.dto.product;
+
+import javaweb.my_project.enums.OcopStatus;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductFacetRequest {
+    List<String> categoryIds;
+    List<String> farmerIds;
+    List<Integer> stars;
+    List<OcopStatus> ocopStatuses;
+    List<String> unitPrices;
+    Integer minPrice;
+    Integer maxPrice;
+    int page = 0;
+    int size = 12;
+}
@@ -0,0 +1,18 @@
+package javaweb.my_project.dto.product;
+
+import javaweb.my_project.dto.api.PageResponse;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@Data
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductFacetResponse {
+    PageResponse<ProductTagResponse> products;
+    // facet -> (giá trị -> số sản phẩm khớp các filter của những facet khác)
+    Map<String, Map<String, Long>> facets;
+}
@@ -21,6 +21,7 @@ public class ProductResponse {
     Integer price;
     Integer inventory;
     Integer sold;
+    Integer views;
     Double rating;
     String thumbnail;
     String unitPrice;
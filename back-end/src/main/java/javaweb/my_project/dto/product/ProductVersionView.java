@@ -0,0 +1,21 @@
+package javaweb.my_project.dto.product;
+
+import java.time.LocalDateTime;
+
+public interface ProductVersionView {
+    Long getVersion();
+
+    LocalDateTime getUpdatedAt();
+
+    Integer getSold();
+
+    LocalDateTime getCountersUpdatedAt();
+
+    Long getFarmerVersion();
+
+    LocalDateTime getFarmerUpdatedAt();
+
+    Long getCategoryVersion();
+
+    LocalDateTime getCategoryUpdatedAt();
+}
@@ -4,12 +4,17 @@ import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(indexes = {
+        @Index(name = "idx_category_path", columnList = "path")
+})
 public class Category {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -20,4 +25,20 @@ public class Category {
     String parentId;
 
     Integer level;
+
+    // Materialized path: "/rootId/.../id/", cây con = mọi category có path bắt đầu bằng path này
+    @Column(length = 512)
+    String path;
+
+    LocalDateTime updatedAt;
+
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    Long version;
+
+    @PrePersist
+    @PreUpdate
+    void onSave() {
+        this.updatedAt = LocalDateTime.now();
+    }
 }
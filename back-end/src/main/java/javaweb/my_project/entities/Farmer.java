@@ -37,6 +37,12 @@ public class Farmer {
 
     LocalDateTime createdAt;
 
+    LocalDateTime updatedAt;
+
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    Long version;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     FarmerStatus status;
@@ -70,5 +76,11 @@ public class Farmer {
         this.status = FarmerStatus.ACTIVE;
         this.rating = 5.0;
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
     }
 }
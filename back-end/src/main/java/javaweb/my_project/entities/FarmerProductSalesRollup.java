@@ -0,0 +1,30 @@
+package javaweb.my_project.entities;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import javaweb.my_project.entities.embeddedId.FarmerProductSalesRollupId;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Doanh số theo farmer, ngày đặt đơn và sản phẩm (chỉ tính đơn DELIVERED/RECEIVED)
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "farmer_product_sales_rollup")
+public class FarmerProductSalesRollup {
+
+    @EmbeddedId
+    FarmerProductSalesRollupId id;
+
+    Long revenue;
+
+    Long units;
+
+    Long orderCount;
+}
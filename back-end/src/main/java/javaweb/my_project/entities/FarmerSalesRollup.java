@@ -0,0 +1,35 @@
+package javaweb.my_project.entities;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import javaweb.my_project.entities.embeddedId.FarmerSalesRollupId;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Doanh số theo farmer và ngày đặt đơn, được cộng dồn khi đơn đổi trạng thái.
+ * Doanh thu, số lượng và số đơn chỉ tính đơn DELIVERED/RECEIVED
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "farmer_sales_rollup")
+public class FarmerSalesRollup {
+
+    @EmbeddedId
+    FarmerSalesRollupId id;
+
+    Long revenue;
+
+    Long units;
+
+    Long orderCount;
+
+    Long receivedCount;
+
+    Long canceledCount;
+}
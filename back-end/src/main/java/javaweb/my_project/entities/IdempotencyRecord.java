@@ -0,0 +1,44 @@
+package javaweb.my_project.entities;
+
+import jakarta.persistence.*;
+import javaweb.my_project.enums.IdempotencyStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả của request có Idempotency-Key, dùng chung giữa các instance.
+ * Bản ghi IN_PROGRESS là quyền thực thi của một instance, hết hạn thì instance khác được lấy lại
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "idempotency_record", indexes = {
+        @Index(name = "idx_idempotency_record_expires_at", columnList = "expires_at")
+})
+public class IdempotencyRecord {
+    // scope:accountId:key
+    @Id
+    @Column(length = 191)
+    String id;
+
+    // SHA-256 của request, cùng key nhưng khác request thì bị từ chối
+    @Column(length = 64, nullable = false)
+    String fingerprint;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    IdempotencyStatus status;
+
+    // Response đã serialize (JSON) khi COMPLETED
+    @Column(columnDefinition = "MEDIUMTEXT")
+    String response;
+
+    LocalDateTime createdAt;
+
+    LocalDateTime expiresAt;
+}
@@ -20,7 +20,13 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_farmer_created_at", columnList = "farmer_id, created_at"),
+        @Index(name = "idx_orders_account_created_at", columnList = "account_id, created_at"),
+        @Index(name = "idx_orders_reservation_expires_at", columnList = "reservation_expires_at"),
+        @Index(name = "idx_orders_payment_reference", columnList = "payment_reference"),
+        @Index(name = "idx_orders_payment_status_requested_at", columnList = "payment_status, payment_requested_at")
+})
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -50,6 +56,16 @@ public class Order {
 
     LocalDateTime createdAt;
 
+    // Hạn giữ tồn kho cho đơn VNPAY chưa thanh toán, null khi không còn giữ hàng
+    LocalDateTime reservationExpiresAt;
+
+    // Mã thanh toán chung khi một lần checkout tạo nhiều đơn (vnp_TxnRef), null nếu thanh toán theo id đơn
+    @Column(length = 64)
+    String paymentReference;
+
+    // vnp_CreateDate của link thanh toán VNPAY gần nhất, cần để tra cứu giao dịch (querydr); null nếu chưa tạo link
+    LocalDateTime paymentRequestedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "address_id")
     @JsonBackReference
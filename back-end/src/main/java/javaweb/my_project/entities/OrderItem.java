@@ -19,13 +19,20 @@ public class OrderItem {
 
     Integer quantity;
 
+    // Đơn giá tại thời điểm đặt hàng, dùng cho thống kê doanh thu theo sản phẩm
+    Integer price;
+
     @ManyToOne
     @JoinColumn(name = "product_id")
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     Product product;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id")
     @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     Order order;
 
 }
@@ -0,0 +1,63 @@
+package javaweb.my_project.entities;
+
+import jakarta.persistence.*;
+import javaweb.my_project.enums.OutboxEventType;
+import javaweb.my_project.enums.OutboxStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Side effect (email, webhook...) ghi cùng transaction với thay đổi của đơn hàng,
+ * được OutboxDispatcher gửi sau khi commit (at-least-once)
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "outbox_event", indexes = {
+        @Index(name = "idx_outbox_event_status_next_attempt_at", columnList = "status, next_attempt_at")
+})
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32, nullable = false)
+    OutboxEventType type;
+
+    // Id của đối tượng phát sinh sự kiện (vd: id đơn hàng)
+    @Column(length = 64)
+    String aggregateId;
+
+    @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
+    String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    OutboxStatus status;
+
+    Integer attempts;
+
+    // Lần gửi kế tiếp; khi đang gửi là hạn lease để instance khác không lấy trùng
+    LocalDateTime nextAttemptAt;
+
+    @Column(columnDefinition = "TEXT")
+    String lastError;
+
+    LocalDateTime createdAt;
+
+    LocalDateTime sentAt;
+
+    @PrePersist
+    void onCreate() {
+        this.status = OutboxStatus.PENDING;
+        this.attempts = 0;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
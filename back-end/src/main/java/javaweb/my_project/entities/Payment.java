@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "payments")
+// Mỗi đơn chỉ có 1 payment cho 1 vnp_TransactionNo (checkout nhiều đơn dùng chung TransactionNo)
+@Table(name = "payments", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payments_transaction_id_order_id", columnNames = {"transaction_id", "order_id"})
+})
 @Builder
 public class Payment {
     @Id
@@ -18,6 +18,9 @@ import java.util.Set;
 @AllArgsConstructor
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(indexes = {
+        @Index(name = "idx_product_status_rating_created_id", columnList = "status, rating, created_at, id")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -32,8 +35,17 @@ public class Product {
 
     Integer inventory;
 
+    // sold/views chỉ được cộng dồn bằng SQL (ProductCounterBuffer), entity update không ghi đè
+    @Column(updatable = false)
     Integer sold;
 
+    @Column(updatable = false, columnDefinition = "int default 0 not null")
+    Integer views;
+
+    // Lần flush sold/views gần nhất, tính vào Last-Modified của chi tiết sản phẩm
+    @Column(insertable = false, updatable = false)
+    LocalDateTime countersUpdatedAt;
+
     Double rating;
 
     String thumbnail;
@@ -44,6 +56,13 @@ public class Product {
 
     LocalDateTime deletedAt;
 
+    LocalDateTime updatedAt;
+
+    // Tăng mỗi lần cập nhật, dùng cho optimistic locking và ETag
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    Long version;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     ProductStatus status;
@@ -96,6 +115,13 @@ public class Product {
         this.status = ProductStatus.PENDING;
         this.rating = 5.0;
         this.sold = 0;
+        this.views = 0;
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
     }
 }
@@ -0,0 +1,22 @@
+package javaweb.my_project.entities.embeddedId;
+
+import jakarta.persistence.Embeddable;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FarmerProductSalesRollupId {
+
+    String farmerId;
+
+    LocalDate saleDate;
+
+    String productId;
+}
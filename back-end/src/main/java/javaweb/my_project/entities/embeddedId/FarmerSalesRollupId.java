@@ -0,0 +1,20 @@
+package javaweb.my_project.entities.embeddedId;
+
+import jakarta.persistence.Embeddable;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FarmerSalesRollupId {
+
+    String farmerId;
+
+    LocalDate saleDate;
+}
@@ -0,0 +1,7 @@
+package javaweb.my_project.enums;
+
+public enum AnalyticsGranularity {
+    DAY,
+    WEEK,
+    MONTH
+}
@@ -0,0 +1,6 @@
+package javaweb.my_project.enums;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
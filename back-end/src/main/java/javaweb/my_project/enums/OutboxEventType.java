@@ -0,0 +1,5 @@
+package javaweb.my_project.enums;
+
+public enum OutboxEventType {
+    EMAIL
+}
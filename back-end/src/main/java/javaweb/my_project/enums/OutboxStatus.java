@@ -0,0 +1,7 @@
+package javaweb.my_project.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
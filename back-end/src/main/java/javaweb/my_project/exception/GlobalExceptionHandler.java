@@ -2,6 +2,7 @@ package javaweb.my_project.exception;
 
 import javaweb.my_project.dto.api.ApiResponse;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -38,6 +39,17 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(400).body(response);
     }
 
+    @ExceptionHandler(value = ObjectOptimisticLockingFailureException.class)
+    ResponseEntity<ApiResponse<Void>> handlingOptimisticLockingFailureException(
+            ObjectOptimisticLockingFailureException e) {
+        ApiResponse<Void> response = ApiResponse.<Void>builder()
+                .success(false)
+                .code("global-e-05")
+                .message("Resource was modified concurrently, please reload and try again")
+                .build();
+        return ResponseEntity.status(409).body(response); // 409 Conflict
+    }
+
     @ExceptionHandler(value = AuthenticationException.class)
     ResponseEntity<ApiResponse<Void>> handlingAuthenticationException(AuthenticationException e) {
         ApiResponse<Void> response = ApiResponse.<Void>builder()
@@ -15,6 +15,9 @@ public interface CategoryMapper {
 
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "level", ignore = true)
+    @Mapping(target = "path", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Category toCategory(CategoryRequest request);
 
     @Mapping(target = "children", ignore = true)
@@ -23,5 +26,8 @@ public interface CategoryMapper {
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "level", ignore = true)
+    @Mapping(target = "path", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
     void updateCategory(@MappingTarget Category category, CategoryRequest request);
 }
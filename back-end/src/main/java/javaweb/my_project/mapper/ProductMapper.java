@@ -9,6 +9,7 @@ import org.mapstruct.BeanMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
+import org.mapstruct.Named;
 import org.mapstruct.NullValuePropertyMappingStrategy;
 
 import java.util.List;
@@ -20,8 +21,12 @@ public interface ProductMapper {
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "sold", ignore = true)
+    @Mapping(target = "views", ignore = true)
+    @Mapping(target = "countersUpdatedAt", ignore = true)
     @Mapping(target = "rating", ignore = true)
     @Mapping(target = "deletedAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "marketPrices", ignore = true)
     @Mapping(target = "images", ignore = true)
@@ -37,6 +42,12 @@ public interface ProductMapper {
     @Mapping(source = "category.name", target = "category")
     ProductResponse toProductResponse(Product product);
 
+    // Chi tiết được cache theo ETag: bỏ views (đổi theo từng lượt xem), lấy riêng qua /{id}/views
+    @Named("detail")
+    @Mapping(source = "category.name", target = "category")
+    @Mapping(target = "views", ignore = true)
+    ProductResponse toProductDetailResponse(Product product);
+
     @Mapping(source = "category.id", target = "categoryId")
     ProductTagResponse toProductTagResponse(Product product);
 
@@ -44,8 +55,12 @@ public interface ProductMapper {
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "sold", ignore = true)
+    @Mapping(target = "views", ignore = true)
+    @Mapping(target = "countersUpdatedAt", ignore = true)
     @Mapping(target = "rating", ignore = true)
     @Mapping(target = "deletedAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "marketPrices", ignore = true)
     @Mapping(target = "images", ignore = true)
@@ -3,8 +3,11 @@ package javaweb.my_project.repository;
 import javaweb.my_project.entities.CartItem;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +16,11 @@ public interface CartItemRepository extends JpaRepository<CartItem, String> {
     Optional<CartItem> findByProductIdAndAccountId(String productId, String accountId);
 
     List<CartItem> findAllByAccountId(String accountId, Sort sort);
+
+    // Chỉ lấy cart item của account hiện tại, fetch luôn product (kèm farmer, category, OCOP) trong 1 câu
+    @Query("SELECT ci FROM CartItem ci JOIN FETCH ci.product p JOIN FETCH p.farmer " +
+            "LEFT JOIN FETCH p.category LEFT JOIN FETCH p.ocop " +
+            "WHERE ci.id IN :ids AND ci.account.id = :accountId")
+    List<CartItem> findAllWithProductByIdInAndAccountId(@Param("ids") Collection<String> ids,
+                                                        @Param("accountId") String accountId);
 }
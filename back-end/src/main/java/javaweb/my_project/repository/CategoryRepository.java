@@ -1,12 +1,41 @@
 package javaweb.my_project.repository;
 
+import javaweb.my_project.dto.category.CategoryVersionView;
 import javaweb.my_project.entities.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, String> {
     List<Category> findAllByParentId(String parentId);
+
+    boolean existsByPathIsNull();
+
+    @Query("SELECT COUNT(c) AS count, MAX(c.updatedAt) AS updatedAt " +
+            "FROM Category c")
+    CategoryVersionView findTreeVersion();
+
+    // id:version của mọi category theo thứ tự id, để băm thành ETag của cây
+    @Query("SELECT CONCAT(c.id, ':', c.version) FROM Category c ORDER BY c.id")
+    List<String> findAllIdVersions();
+
+    // Đổi prefix path và level của cả cây con (gồm chính category) trong một câu UPDATE
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Category c SET c.path = CONCAT(:newPath, SUBSTRING(c.path, LENGTH(:oldPath) + 1)), " +
+            "c.level = c.level + :levelDelta, c.version = c.version + 1, c.updatedAt = :now " +
+            "WHERE c.path LIKE CONCAT(:oldPath, '%')")
+    int moveSubtree(@Param("oldPath") String oldPath,
+                    @Param("newPath") String newPath,
+                    @Param("levelDelta") int levelDelta,
+                    @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("DELETE FROM Category c WHERE c.path LIKE CONCAT(:path, '%')")
+    int deleteSubtree(@Param("path") String path);
 }
@@ -0,0 +1,25 @@
+package javaweb.my_project.repository;
+
+import javaweb.my_project.dto.farmer.ProductSalesView;
+import javaweb.my_project.entities.FarmerProductSalesRollup;
+import javaweb.my_project.entities.embeddedId.FarmerProductSalesRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface FarmerProductSalesRollupRepository
+        extends JpaRepository<FarmerProductSalesRollup, FarmerProductSalesRollupId> {
+    @Query("SELECT r.id.productId AS productId, p.name AS productName, SUM(r.revenue) AS revenue, " +
+            "SUM(r.units) AS units, SUM(r.orderCount) AS orderCount " +
+            "FROM FarmerProductSalesRollup r LEFT JOIN Product p ON p.id = r.id.productId " +
+            "WHERE r.id.farmerId = :farmerId AND r.id.saleDate BETWEEN :from AND :to " +
+            "GROUP BY r.id.productId, p.name HAVING SUM(r.orderCount) > 0 ORDER BY SUM(r.revenue) DESC")
+    List<ProductSalesView> sumByProductInRange(@Param("farmerId") String farmerId,
+                                               @Param("from") LocalDate from,
+                                               @Param("to") LocalDate to);
+}
@@ -1,8 +1,11 @@
 package javaweb.my_project.repository;
 
+import javaweb.my_project.dto.farmer.FarmerVersionView;
 import javaweb.my_project.entities.Account;
 import javaweb.my_project.entities.Farmer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,4 +13,7 @@ import java.util.Optional;
 @Repository
 public interface FarmerRepository extends JpaRepository<Farmer, String> {
     Optional<Farmer> findByAccount(Account account);
+
+    @Query("SELECT f.version AS version, f.updatedAt AS updatedAt FROM Farmer f WHERE f.id = :id")
+    Optional<FarmerVersionView> findVersionById(@Param("id") String id);
 }
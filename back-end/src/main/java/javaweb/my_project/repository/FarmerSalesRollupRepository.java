@@ -0,0 +1,21 @@
+package javaweb.my_project.repository;
+
+import javaweb.my_project.entities.FarmerSalesRollup;
+import javaweb.my_project.entities.embeddedId.FarmerSalesRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface FarmerSalesRollupRepository extends JpaRepository<FarmerSalesRollup, FarmerSalesRollupId> {
+    // Quét theo khoá chính (farmer_id, sale_date)
+    @Query("SELECT r FROM FarmerSalesRollup r WHERE r.id.farmerId = :farmerId " +
+            "AND r.id.saleDate BETWEEN :from AND :to ORDER BY r.id.saleDate")
+    List<FarmerSalesRollup> findAllInRange(@Param("farmerId") String farmerId,
+                                           @Param("from") LocalDate from,
+                                           @Param("to") LocalDate to);
+}
@@ -0,0 +1,43 @@
+package javaweb.my_project.repository;
+
+import javaweb.my_project.entities.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    // Giành quyền thực thi: trả về 0 nếu key đã có bản ghi (của instance khác hoặc đã hoàn thành)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO idempotency_record (id, fingerprint, status, created_at, expires_at) " +
+            "VALUES (:id, :fingerprint, 'IN_PROGRESS', :now, :expiresAt)", nativeQuery = true)
+    int insertIfAbsent(@Param("id") String id,
+                       @Param("fingerprint") String fingerprint,
+                       @Param("now") LocalDateTime now,
+                       @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = javaweb.my_project.enums.IdempotencyStatus.COMPLETED, " +
+            "r.response = :response, r.expiresAt = :expiresAt WHERE r.id = :id")
+    int complete(@Param("id") String id,
+                 @Param("response") String response,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    // Request lỗi thì bỏ quyền thực thi để client gửi lại với cùng key
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id " +
+            "AND r.status = javaweb.my_project.enums.IdempotencyStatus.IN_PROGRESS")
+    int release(@Param("id") String id);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.expiresAt < :now")
+    int deleteIfExpired(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_record WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
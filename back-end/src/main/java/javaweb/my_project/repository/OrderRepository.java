@@ -1,15 +1,154 @@
 package javaweb.my_project.repository;
 
+import jakarta.persistence.LockModeType;
+import javaweb.my_project.dto.order.OrderContactView;
+import javaweb.my_project.dto.order.OrderItemQuantityView;
+import javaweb.my_project.dto.order.OrderItemSaleView;
+import javaweb.my_project.dto.order.OrderStatusView;
+import javaweb.my_project.dto.payment.PendingPaymentView;
 import javaweb.my_project.entities.Order;
+import javaweb.my_project.enums.OrderStatus;
+import javaweb.my_project.enums.PaymentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, String> {
     List<Order> findAllByAccountId(String accountId, Sort sort);
 
     List<Order> findAllByFarmerId(String farmerId, Sort sort);
+
+    // Phase 1 của phân trang keyset: chỉ lấy id theo index (farmer_id|account_id, created_at)
+    @Query("SELECT o.id FROM Order o WHERE (:accountId IS NULL OR o.account.id = :accountId) " +
+            "AND (:farmerId IS NULL OR o.farmer.id = :farmerId) AND (:status IS NULL OR o.status = :status) " +
+            "AND (:from IS NULL OR o.createdAt >= :from) AND (:to IS NULL OR o.createdAt < :to) " +
+            "AND (:cursorCreatedAt IS NULL OR o.createdAt < :cursorCreatedAt " +
+            "OR (o.createdAt = :cursorCreatedAt AND o.id < :cursorId)) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<String> findHistoryPageIds(@Param("accountId") String accountId,
+                                    @Param("farmerId") String farmerId,
+                                    @Param("status") OrderStatus status,
+                                    @Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to,
+                                    @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                    @Param("cursorId") String cursorId,
+                                    Pageable pageable);
+
+    // Phase 2: fetch toàn bộ đồ thị cần cho OrderResponse (kể cả các quan hệ 1-1 phía mappedBy) trong 1 câu
+    @Query("SELECT DISTINCT o FROM Order o " +
+            "LEFT JOIN FETCH o.orderItems oi LEFT JOIN FETCH oi.product p " +
+            "LEFT JOIN FETCH p.category LEFT JOIN FETCH p.ocop " +
+            "LEFT JOIN FETCH o.address a LEFT JOIN FETCH a.farmer " +
+            "LEFT JOIN FETCH o.account acc LEFT JOIN FETCH acc.roles " +
+            "LEFT JOIN FETCH acc.farmer LEFT JOIN FETCH acc.refreshToken " +
+            "LEFT JOIN FETCH o.farmer f LEFT JOIN FETCH f.address LEFT JOIN FETCH f.weatherInfo " +
+            "LEFT JOIN FETCH o.payment " +
+            "WHERE o.id IN :ids")
+    List<Order> findAllWithDetailsByIdIn(@Param("ids") Collection<String> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") String id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.paymentReference = :paymentReference ORDER BY o.id")
+    List<Order> findAllByPaymentReferenceForUpdate(@Param("paymentReference") String paymentReference);
+
+    List<Order> findAllByPaymentReference(String paymentReference);
+
+    // Chỉ đi qua index reservation_expires_at; SKIP LOCKED để nhiều instance/IPN không chờ nhau
+    @Query(value = "SELECT id FROM orders WHERE reservation_expires_at <= :now AND status = 'PENDING' " +
+            "AND payment_status <> 'PAID' ORDER BY reservation_expires_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<String> lockExpiredReservations(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Khoá các đơn cần chuyển trạng thái, chỉ đọc các cột cần để kiểm tra
+    @Query(value = "SELECT id AS id, status AS status, payment_status AS paymentStatus, farmer_id AS farmerId " +
+            "FROM orders WHERE id IN (:ids) " +
+            "FOR UPDATE", nativeQuery = true)
+    List<OrderStatusView> lockStatusByIdIn(@Param("ids") Collection<String> ids);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :status, o.paymentStatus = COALESCE(:paymentStatus, o.paymentStatus), " +
+            "o.lastStatusChangeReason = COALESCE(:reason, o.lastStatusChangeReason), " +
+            "o.reservationExpiresAt = NULL WHERE o.id IN :ids")
+    int changeStatus(@Param("ids") Collection<String> ids,
+                     @Param("status") OrderStatus status,
+                     @Param("paymentStatus") PaymentStatus paymentStatus,
+                     @Param("reason") String reason);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Order o SET o.status = javaweb.my_project.enums.OrderStatus.CANCELED, " +
+            "o.paymentStatus = javaweb.my_project.enums.PaymentStatus.CANCELED, " +
+            "o.reservationExpiresAt = NULL, o.lastStatusChangeReason = :reason WHERE o.id IN :ids")
+    int cancelExpiredReservations(@Param("ids") Collection<String> ids, @Param("reason") String reason);
+
+    @Query("SELECT oi.order.id AS orderId, oi.product.id AS productId, oi.quantity AS quantity " +
+            "FROM OrderItem oi WHERE oi.order.id IN :orderIds")
+    List<OrderItemQuantityView> findItemQuantitiesByOrderIdIn(@Param("orderIds") Collection<String> orderIds);
+
+    // Đơn giá cũ (trước khi order item lưu giá) lấy theo giá hiện tại của sản phẩm
+    @Query("SELECT o.id AS orderId, o.farmer.id AS farmerId, o.createdAt AS createdAt, " +
+            "o.totalPrice AS totalPrice, o.totalQuantity AS totalQuantity, p.id AS productId, " +
+            "oi.quantity AS quantity, COALESCE(oi.price, p.price) AS price " +
+            "FROM OrderItem oi JOIN oi.order o JOIN oi.product p WHERE o.id IN :orderIds")
+    List<OrderItemSaleView> findItemSalesByOrderIdIn(@Param("orderIds") Collection<String> orderIds);
+
+    // Email người mua và farmer của các đơn, không load entity Account (tránh kéo theo các quan hệ 1-1)
+    @Query("SELECT o.id AS orderId, o.totalPrice AS totalPrice, o.totalQuantity AS totalQuantity, " +
+            "a.email AS consumerEmail, fa.email AS farmerEmail " +
+            "FROM Order o JOIN o.account a JOIN o.farmer f JOIN f.account fa WHERE o.id IN :orderIds")
+    List<OrderContactView> findContactsByIdIn(@Param("orderIds") Collection<String> orderIds);
+
+    // Cập nhật có điều kiện: chỉ ghi khi trạng thái thanh toán hiện tại khác trạng thái đích
+    @Modifying
+    @Query("UPDATE Order o SET o.paymentStatus = :status WHERE o.id IN :ids AND o.paymentStatus <> :status")
+    int changePaymentStatusUnless(@Param("ids") Collection<String> ids, @Param("status") PaymentStatus status);
+
+    @Modifying
+    @Query("UPDATE Order o SET o.paymentStatus = :to WHERE o.id IN :ids AND o.paymentStatus = :from")
+    int changePaymentStatusIf(@Param("ids") Collection<String> ids,
+                              @Param("from") PaymentStatus from,
+                              @Param("to") PaymentStatus to);
+
+    @Modifying
+    @Query("UPDATE Order o SET o.paymentRequestedAt = :requestedAt WHERE o.id IN :ids")
+    int markPaymentRequested(@Param("ids") Collection<String> ids, @Param("requestedAt") LocalDateTime requestedAt);
+
+    // Keyset theo (payment_requested_at, id) trên index (payment_status, payment_requested_at)
+    @Query("SELECT o.id AS id, o.paymentReference AS paymentReference, o.paymentRequestedAt AS paymentRequestedAt " +
+            "FROM Order o WHERE o.paymentMethod = javaweb.my_project.enums.PaymentMethod.VNPAY " +
+            "AND o.paymentStatus = javaweb.my_project.enums.PaymentStatus.PENDING " +
+            "AND o.paymentRequestedAt >= :requestedFrom AND o.paymentRequestedAt < :requestedBefore " +
+            "AND (:cursorRequestedAt IS NULL OR o.paymentRequestedAt > :cursorRequestedAt " +
+            "OR (o.paymentRequestedAt = :cursorRequestedAt AND o.id > :cursorId)) " +
+            "ORDER BY o.paymentRequestedAt, o.id")
+    List<PendingPaymentView> findPendingVnpayPayments(@Param("requestedFrom") LocalDateTime requestedFrom,
+                                                      @Param("requestedBefore") LocalDateTime requestedBefore,
+                                                      @Param("cursorRequestedAt") LocalDateTime cursorRequestedAt,
+                                                      @Param("cursorId") String cursorId,
+                                                      Pageable pageable);
+
+    // vnp_TxnRef là paymentReference của nhóm, hoặc id đơn khi đơn thanh toán riêng
+    @Query(value = "SELECT id FROM orders WHERE payment_status = 'PENDING' " +
+            "AND (payment_reference IN (:txnRefs) OR (payment_reference IS NULL AND id IN (:txnRefs))) " +
+            "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<String> lockPendingPaymentIdsByTxnRefIn(@Param("txnRefs") Collection<String> txnRefs);
+
+    @Query("SELECT o.paymentStatus FROM Order o WHERE o.id = :id")
+    Optional<PaymentStatus> findPaymentStatusById(@Param("id") String id);
+
+    @Query("SELECT o.account.id FROM Order o WHERE o.id = :id")
+    Optional<String> findAccountIdById(@Param("id") String id);
 }
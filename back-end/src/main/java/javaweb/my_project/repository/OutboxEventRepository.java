@@ -0,0 +1,55 @@
+package javaweb.my_project.repository;
+
+import javaweb.my_project.entities.OutboxEvent;
+import javaweb.my_project.enums.OutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, String> {
+    // Đi theo index (status, next_attempt_at); SKIP LOCKED để nhiều instance cùng drain mà không chờ nhau
+    @Query(value = "SELECT id FROM outbox_event WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<String> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.attempts = e.attempts + 1, e.nextAttemptAt = :leaseUntil " +
+            "WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<String> ids, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = javaweb.my_project.enums.OutboxStatus.SENT, e.sentAt = :now, " +
+            "e.lastError = NULL WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<String> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = :status, e.nextAttemptAt = :nextAttemptAt, e.lastError = :error " +
+            "WHERE e.id = :id")
+    int markFailed(@Param("id") String id,
+                   @Param("status") OutboxStatus status,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("error") String error);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = javaweb.my_project.enums.OutboxStatus.PENDING, e.attempts = 0, " +
+            "e.nextAttemptAt = :now WHERE e.status = javaweb.my_project.enums.OutboxStatus.FAILED")
+    int requeueFailed(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "DELETE FROM outbox_event WHERE status = 'SENT' AND sent_at < :before LIMIT :limit",
+            nativeQuery = true)
+    int deleteSentBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    long countByStatus(OutboxStatus status);
+
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e WHERE e.status = javaweb.my_project.enums.OutboxStatus.PENDING")
+    Optional<LocalDateTime> findOldestPendingCreatedAt();
+}
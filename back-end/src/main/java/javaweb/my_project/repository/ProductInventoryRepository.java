@@ -0,0 +1,61 @@
+package javaweb.my_project.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Atomic inventory updates executed directly in SQL (one JDBC batch per call),
+ * so concurrent checkouts never read-modify-write the same row in Java.
+ * Rows are always updated in id order to keep lock acquisition consistent.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductInventoryRepository {
+    private static final String DECREMENT_SQL = "UPDATE product SET inventory = inventory - ?, " +
+            "version = version + 1, updated_at = ? WHERE id = ? AND inventory >= ?";
+    private static final String INCREMENT_SQL = "UPDATE product SET inventory = inventory + ?, " +
+            "version = version + 1, updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Decrement inventory only where enough stock remains.
+     * Returns the ids that could not be decremented; the caller must roll back the transaction
+     * if the list is not empty, because the other rows have already been updated.
+     */
+    public List<String> decrement(Map<String, Integer> quantities) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        List<Object[]> args = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Integer> entry : entries) {
+            args.add(new Object[] { entry.getValue(), now, entry.getKey(), entry.getValue() });
+        }
+        int[] counts = jdbcTemplate.batchUpdate(DECREMENT_SQL, args);
+        List<String> insufficient = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            // SUCCESS_NO_INFO: driver không trả số dòng, coi như thành công
+            if (counts[i] == 0 || counts[i] == Statement.EXECUTE_FAILED) {
+                insufficient.add(entries.get(i).getKey());
+            }
+        }
+        return insufficient;
+    }
+
+    public void increment(Map<String, Integer> quantities) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        for (Map.Entry<String, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            args.add(new Object[] { entry.getValue(), now, entry.getKey() });
+        }
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, args);
+    }
+}
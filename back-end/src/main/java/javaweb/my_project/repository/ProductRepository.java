@@ -1,24 +1,130 @@
 package javaweb.my_project.repository;
 
+import jakarta.persistence.QueryHint;
+import javaweb.my_project.dto.product.ProductExportRow;
+import javaweb.my_project.dto.product.ProductVersionView;
 import javaweb.my_project.entities.Product;
 import javaweb.my_project.enums.OcopStatus;
 import javaweb.my_project.enums.ProductStatus;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, String> {
     Page<Product> findByStatus(ProductStatus status, Pageable pageable);
 
+    // Listing card (ProductTagResponse): fetch farmer + OCOP trong cùng câu SELECT để tránh N+1
+    @EntityGraph(attributePaths = { "farmer", "farmer.address", "farmer.weatherInfo", "ocop" })
+    @Query(value = "SELECT p FROM Product p WHERE p.status = :status",
+            countQuery = "SELECT COUNT(p) FROM Product p WHERE p.status = :status")
+    Page<Product> findListingPageByStatus(@Param("status") ProductStatus status, Pageable pageable);
+
+    // Lọc theo cây con category bằng một range predicate trên category.path (index idx_category_path)
+    @EntityGraph(attributePaths = { "farmer", "farmer.address", "farmer.weatherInfo", "ocop" })
+    @Query(value = "SELECT p FROM Product p WHERE p.status = :status " +
+            "AND p.category.path LIKE CONCAT(:categoryPath, '%')",
+            countQuery = "SELECT COUNT(p) FROM Product p WHERE p.status = :status " +
+                    "AND p.category.path LIKE CONCAT(:categoryPath, '%')")
+    Page<Product> findListingPageByStatusAndCategoryPath(@Param("status") ProductStatus status,
+                                                         @Param("categoryPath") String categoryPath,
+                                                         Pageable pageable);
+
+    @EntityGraph(attributePaths = { "farmer", "farmer.address", "farmer.weatherInfo", "ocop" })
+    List<Product> findAllByIdIn(Collection<String> ids);
+
+    // Keyset pagination: (rating, createdAt, id) giảm dần, không COUNT và không OFFSET
+    @EntityGraph(attributePaths = { "farmer", "farmer.address", "farmer.weatherInfo", "ocop" })
+    @Query("SELECT p FROM Product p LEFT JOIN p.category c WHERE p.status = :status " +
+            "AND (:categoryPath IS NULL OR c.path LIKE CONCAT(:categoryPath, '%')) " +
+            "ORDER BY p.rating DESC, p.createdAt DESC, p.id DESC")
+    List<Product> findFirstKeysetPage(@Param("status") ProductStatus status,
+                                      @Param("categoryPath") String categoryPath,
+                                      Pageable pageable);
+
+    @EntityGraph(attributePaths = { "farmer", "farmer.address", "farmer.weatherInfo", "ocop" })
+    @Query("SELECT p FROM Product p LEFT JOIN p.category c WHERE p.status = :status " +
+            "AND (:categoryPath IS NULL OR c.path LIKE CONCAT(:categoryPath, '%')) AND (p.rating < :rating " +
+            "OR (p.rating = :rating AND (p.createdAt < :createdAt " +
+            "OR (p.createdAt = :createdAt AND p.id < :id)))) " +
+            "ORDER BY p.rating DESC, p.createdAt DESC, p.id DESC")
+    List<Product> findKeysetPageAfter(@Param("status") ProductStatus status,
+                                      @Param("categoryPath") String categoryPath,
+                                      @Param("rating") Double rating,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") String id,
+                                      Pageable pageable);
+
+    String ADMIN_FILTER = "(:status IS NULL OR p.status = :status) " +
+            "AND (:categoryPath IS NULL OR c.path LIKE CONCAT(:categoryPath, '%')) " +
+            "AND (:farmerId IS NULL OR p.farmer.id = :farmerId) " +
+            "AND (:keyword IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')))";
+
+    // Phân trang 2 bước: lấy id theo trang trước, sau đó fetch chi tiết theo id (tránh fetch collection + LIMIT)
+    @Query(value = "SELECT p.id FROM Product p LEFT JOIN p.category c WHERE " + ADMIN_FILTER,
+            countQuery = "SELECT COUNT(p) FROM Product p LEFT JOIN p.category c WHERE " + ADMIN_FILTER)
+    Page<String> findAdminPageIds(@Param("status") ProductStatus status,
+                                  @Param("categoryPath") String categoryPath,
+                                  @Param("farmerId") String farmerId,
+                                  @Param("keyword") String keyword,
+                                  Pageable pageable);
+
+    @EntityGraph(attributePaths = { "farmer", "farmer.address", "farmer.weatherInfo", "ocop", "category", "images" })
+    @Query("SELECT DISTINCT p FROM Product p WHERE p.id IN :ids")
+    List<Product> findAllWithDetailsByIdIn(@Param("ids") Collection<String> ids);
+
+    // Đọc forward-only (MySQL streaming result set), DTO không đi vào persistence context
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT new javaweb.my_project.dto.product.ProductExportRow(p.id, p.name, c.name, f.id, f.name, " +
+            "p.price, p.unitPrice, p.inventory, p.sold, p.rating, p.status, o.status, p.createdAt) " +
+            "FROM Product p LEFT JOIN p.category c LEFT JOIN p.farmer f LEFT JOIN p.ocop o WHERE " + ADMIN_FILTER +
+            " ORDER BY p.createdAt DESC, p.id DESC")
+    Stream<ProductExportRow> streamForExport(@Param("status") ProductStatus status,
+                                             @Param("categoryPath") String categoryPath,
+                                             @Param("farmerId") String farmerId,
+                                             @Param("keyword") String keyword);
+
+    @Query("SELECT p.id FROM Product p WHERE p.farmer.id = :farmerId")
+    List<String> findIdsByFarmerId(@Param("farmerId") String farmerId);
+
     List<Product> findAllByFarmerIdAndStatusNot(String farmerId, ProductStatus status, Sort sort);
 
     List<Product> findAllByStatus(ProductStatus status, Sort sort);
 
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.status = :status")
+    List<Product> findAllWithCategoryByStatus(@Param("status") ProductStatus status);
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.category c WHERE c.id = :categoryId AND p.status = :status")
+    List<Product> findAllWithCategoryByCategoryIdAndStatus(@Param("categoryId") String categoryId,
+                                                           @Param("status") ProductStatus status);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.ocop WHERE p.status = :status")
+    List<Product> findAllWithOcopByStatus(@Param("status") ProductStatus status);
+
+    // Chỉ đọc version/updatedAt (không load entity) để trả 304 sớm
+    @Query("SELECT p.version AS version, p.updatedAt AS updatedAt, p.sold AS sold, " +
+            "p.countersUpdatedAt AS countersUpdatedAt, " +
+            "f.version AS farmerVersion, f.updatedAt AS farmerUpdatedAt, " +
+            "c.version AS categoryVersion, c.updatedAt AS categoryUpdatedAt " +
+            "FROM Product p LEFT JOIN p.farmer f LEFT JOIN p.category c WHERE p.id = :id")
+    Optional<ProductVersionView> findVersionById(@Param("id") String id);
+
+    @Query("SELECT p.views FROM Product p WHERE p.id = :id")
+    Optional<Integer> findViewsById(@Param("id") String id);
+
     List<Product> findByOcopStatus(OcopStatus status);
 
     List<Product> findByOcopStatusNot(OcopStatus status);
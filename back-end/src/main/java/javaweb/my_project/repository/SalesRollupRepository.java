@@ -0,0 +1,82 @@
+package javaweb.my_project.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Writes to the farmer sales rollup tables directly in SQL: increments are
+ * applied as upserts (one JDBC batch per table), and a rebuild recomputes both
+ * tables from orders/order_item with INSERT ... SELECT.
+ * Callers pass rows sorted by key so concurrent upserts lock rows in the same order.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SalesRollupRepository {
+    private static final String SALE_STATUSES = "('DELIVERED', 'RECEIVED')";
+
+    private static final String UPSERT_DAILY_SQL = "INSERT INTO farmer_sales_rollup " +
+            "(farmer_id, sale_date, revenue, units, order_count, received_count, canceled_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+            "revenue = revenue + VALUES(revenue), units = units + VALUES(units), " +
+            "order_count = order_count + VALUES(order_count), " +
+            "received_count = received_count + VALUES(received_count), " +
+            "canceled_count = canceled_count + VALUES(canceled_count)";
+    private static final String UPSERT_PRODUCT_SQL = "INSERT INTO farmer_product_sales_rollup " +
+            "(farmer_id, sale_date, product_id, revenue, units, order_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+            "revenue = revenue + VALUES(revenue), units = units + VALUES(units), " +
+            "order_count = order_count + VALUES(order_count)";
+
+    private static final String REBUILD_DAILY_SQL = "INSERT INTO farmer_sales_rollup " +
+            "(farmer_id, sale_date, revenue, units, order_count, received_count, canceled_count) " +
+            "SELECT o.farmer_id, DATE(o.created_at), " +
+            "SUM(CASE WHEN o.status IN " + SALE_STATUSES + " THEN o.total_price ELSE 0 END), " +
+            "SUM(CASE WHEN o.status IN " + SALE_STATUSES + " THEN o.total_quantity ELSE 0 END), " +
+            "SUM(CASE WHEN o.status IN " + SALE_STATUSES + " THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN o.status = 'RECEIVED' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN o.status = 'CANCELED' THEN 1 ELSE 0 END) " +
+            "FROM orders o WHERE o.farmer_id IS NOT NULL " +
+            "GROUP BY o.farmer_id, DATE(o.created_at)";
+    private static final String REBUILD_PRODUCT_SQL = "INSERT INTO farmer_product_sales_rollup " +
+            "(farmer_id, sale_date, product_id, revenue, units, order_count) " +
+            "SELECT o.farmer_id, DATE(o.created_at), oi.product_id, " +
+            "SUM(COALESCE(oi.price, p.price) * oi.quantity), SUM(oi.quantity), COUNT(*) " +
+            "FROM order_item oi JOIN orders o ON o.id = oi.order_id JOIN product p ON p.id = oi.product_id " +
+            "WHERE o.farmer_id IS NOT NULL AND o.status IN " + SALE_STATUSES + " " +
+            "GROUP BY o.farmer_id, DATE(o.created_at), oi.product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Rows: farmer_id, sale_date, revenue, units, order_count, received_count, canceled_count (as deltas)
+     */
+    public void applyDaily(List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_DAILY_SQL, rows);
+        }
+    }
+
+    /**
+     * Rows: farmer_id, sale_date, product_id, revenue, units, order_count (as deltas)
+     */
+    public void applyProduct(List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_PRODUCT_SQL, rows);
+        }
+    }
+
+    /**
+     * Drop and recompute both tables; must run inside a transaction so readers never see them empty.
+     * Returns the number of daily and product rows written.
+     */
+    public int[] rebuild() {
+        jdbcTemplate.update("DELETE FROM farmer_product_sales_rollup");
+        jdbcTemplate.update("DELETE FROM farmer_sales_rollup");
+        int daily = jdbcTemplate.update(REBUILD_DAILY_SQL);
+        int product = jdbcTemplate.update(REBUILD_PRODUCT_SQL);
+        return new int[] { daily, product };
+    }
+}
@@ -1,20 +1,32 @@
 package javaweb.my_project.service;
 
+import javaweb.my_project.dto.api.ResourceVersion;
 import javaweb.my_project.dto.category.CategoryRequest;
 import javaweb.my_project.dto.category.CategoryTreeNode;
 import javaweb.my_project.dto.category.CategoryUpdateRequest;
+import javaweb.my_project.dto.category.CategoryVersionView;
 import javaweb.my_project.entities.Category;
 import javaweb.my_project.exception.AppException;
 import javaweb.my_project.mapper.CategoryMapper;
 import javaweb.my_project.repository.CategoryRepository;
+import javaweb.my_project.util.ProductCacheUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
@@ -22,17 +34,68 @@ public class CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final CategoryMapper categoryMapper;
+    private final ProductCacheUtil productCacheUtil;
+    private final ProductSearchService productSearchService;
 
+    private static final String PATH_SEPARATOR = "/";
+
+    private String childPath(Category parent, String id) {
+        String parentPath = parent == null ? PATH_SEPARATOR : parent.getPath();
+        return parentPath + id + PATH_SEPARATOR;
+    }
+
+    @Transactional
     public Category create(CategoryRequest request) {
         Category category = categoryMapper.toCategory(request);
+        Category categoryParent = null;
         if (request.getParentId() != null) {
-            Category categoryParent = categoryRepository.findById(request.getParentId()).orElseThrow(
+            categoryParent = categoryRepository.findById(request.getParentId()).orElseThrow(
                     () -> new AppException(HttpStatus.NOT_FOUND, "Parent category not found", "category-e-01"));
             category.setLevel(categoryParent.getLevel() + 1);
         } else {
             category.setLevel(0);
         }
-        return categoryRepository.save(category);
+        category = categoryRepository.save(category);
+        // Id chỉ có sau khi persist, path được flush cùng transaction
+        category.setPath(childPath(categoryParent, category.getId()));
+        return category;
+    }
+
+    /**
+     * Backfill materialized paths for categories created before the path column existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildPaths() {
+        if (!categoryRepository.existsByPathIsNull()) {
+            return;
+        }
+        List<Category> categories = categoryRepository.findAll();
+        Map<String, Category> categoryMap = new HashMap<>();
+        for (Category category : categories) {
+            categoryMap.put(category.getId(), category);
+            category.setPath(null);
+        }
+        for (Category category : categories) {
+            resolvePath(category, categoryMap);
+        }
+        categoryRepository.saveAll(categories);
+    }
+
+    private String resolvePath(Category category, Map<String, Category> categoryMap) {
+        if (category.getPath() != null) {
+            return category.getPath();
+        }
+        Category parent = category.getParentId() == null ? null : categoryMap.get(category.getParentId());
+        String parentPath = parent == null ? PATH_SEPARATOR : resolvePath(parent, categoryMap);
+        category.setPath(parentPath + category.getId() + PATH_SEPARATOR);
+        category.setLevel(parent == null ? 0 : parent.getLevel() + 1);
+        return category.getPath();
+    }
+
+    public Category findById(String id) {
+        return categoryRepository.findById(id).orElseThrow(
+                () -> new AppException(HttpStatus.NOT_FOUND, "Category not found", "category-e-02"));
     }
 
     public List<CategoryTreeNode> buildTree(List<Category> categories) {
@@ -55,32 +118,67 @@ public class CategoryService {
         return tree;
     }
 
+    public ResourceVersion getTreeVersion() {
+        CategoryVersionView view = categoryRepository.findTreeVersion();
+        // Băm id:version của từng category: xoá một category rồi tạo category khác vẫn đổi ETag
+        // (tổng version và số lượng thì có thể trùng)
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String idVersion : categoryRepository.findAllIdVersions()) {
+            digest.update(idVersion.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        String hash = HexFormat.of().formatHex(digest.digest(), 0, 16);
+        return ResourceVersion.of("categories-" + view.getCount() + "-" + hash, view.getUpdatedAt());
+    }
+
     public List<CategoryTreeNode> getTree() {
         List<Category> categories = categoryRepository.findAll();
         return buildTree(categories);
     }
 
+    @Transactional
     public Category update(String id, CategoryUpdateRequest request) {
-        Category category = categoryRepository.findById(id).orElseThrow(
-                () -> new AppException(HttpStatus.NOT_FOUND, "Category not found", "category-e-02"));
+        Category category = findById(id);
+        boolean renamed = !Objects.equals(category.getName(), request.getName());
         category.setName(request.getName());
+        // ProductResponse chứa tên category nên cache chi tiết sản phẩm không còn đúng (xoá cả sau commit)
+        productCacheUtil.clear();
+        if (renamed) {
+            // Tên category nằm trong chỉ mục tìm kiếm; query sẽ flush tên mới trước khi đọc sản phẩm
+            productSearchService.reindexCategory(id);
+        }
+
+        Category parentCategory = null;
         if (request.getParentId() != null) {
-            Category parentCategory = categoryRepository.findById(request.getParentId()).orElseThrow(
+            parentCategory = categoryRepository.findById(request.getParentId()).orElseThrow(
                     () -> new AppException(HttpStatus.NOT_FOUND, "Parent category not found", "category-e-01"));
+            if (parentCategory.getPath().startsWith(category.getPath())) {
+                throw new AppException(HttpStatus.BAD_REQUEST,
+                        "Category cannot be moved under itself or its descendants", "category-e-03");
+            }
+        }
+
+        String oldPath = category.getPath();
+        String newPath = childPath(parentCategory, category.getId());
+        int newLevel = parentCategory == null ? 0 : parentCategory.getLevel() + 1;
+        if (!newPath.equals(oldPath)) {
+            // Cập nhật path + level cho toàn bộ cây con trong một batch
             category.setParentId(request.getParentId());
-            category.setLevel(parentCategory.getLevel() + 1);
-        } else {
-            category.setParentId(null);
-            category.setLevel(0);
+            categoryRepository.save(category);
+            categoryRepository.moveSubtree(oldPath, newPath, newLevel - category.getLevel(), LocalDateTime.now());
+            return findById(id);
         }
         return categoryRepository.save(category);
     }
 
+    @Transactional
     public void delete(String id) {
-        Category category = categoryRepository.findById(id).orElseThrow(
-                () -> new AppException(HttpStatus.NOT_FOUND, "Category not found", "category-e-02"));
-        List<Category> childCategory = categoryRepository.findAllByParentId(id);
-        categoryRepository.deleteAll(childCategory);
-        categoryRepository.delete(category);
+        Category category = findById(id);
+        categoryRepository.deleteSubtree(category.getPath());
     }
 }
@@ -0,0 +1,25 @@
+package javaweb.my_project.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javaweb.my_project.dto.email.SendEmailDto;
+import javaweb.my_project.entities.OutboxEvent;
+import javaweb.my_project.enums.OutboxEventType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class EmailOutboxHandler implements OutboxHandler {
+    private final EmailService emailService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public OutboxEventType getType() {
+        return OutboxEventType.EMAIL;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        emailService.sendEmail(objectMapper.readValue(event.getPayload(), SendEmailDto.class));
+    }
+}
@@ -0,0 +1,213 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.dto.farmer.AnalyticsRebuildResponse;
+import javaweb.my_project.dto.farmer.FarmerAnalyticsResponse;
+import javaweb.my_project.dto.order.OrderItemSaleView;
+import javaweb.my_project.entities.FarmerSalesRollup;
+import javaweb.my_project.enums.AnalyticsGranularity;
+import javaweb.my_project.enums.OrderStatus;
+import javaweb.my_project.exception.AppException;
+import javaweb.my_project.repository.FarmerProductSalesRollupRepository;
+import javaweb.my_project.repository.FarmerSalesRollupRepository;
+import javaweb.my_project.repository.OrderRepository;
+import javaweb.my_project.repository.SalesRollupRepository;
+import javaweb.my_project.security.SecurityUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Farmer sales analytics served from rollup tables keyed by (farmer, order date[, product]).
+ * Each order contributes to its rollup rows according to its current status, so a status
+ * transition applies the difference between the contribution of the new and the old status.
+ * A rebuild computes the same contributions from the order history.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FarmerAnalyticsService {
+    private static final int DEFAULT_RANGE_DAYS = 30;
+    private static final int MAX_RANGE_DAYS = 3 * 366;
+    private static final Comparator<DailyKey> DAILY_ORDER = Comparator.comparing(DailyKey::farmerId)
+            .thenComparing(DailyKey::saleDate);
+    private static final Comparator<ProductKey> PRODUCT_ORDER = Comparator.comparing(ProductKey::farmerId)
+            .thenComparing(ProductKey::saleDate)
+            .thenComparing(ProductKey::productId);
+
+    private final OrderRepository orderRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final FarmerSalesRollupRepository farmerSalesRollupRepository;
+    private final FarmerProductSalesRollupRepository farmerProductSalesRollupRepository;
+    private final SecurityUtil securityUtil;
+
+    private record DailyKey(String farmerId, LocalDate saleDate) {
+    }
+
+    private record ProductKey(String farmerId, LocalDate saleDate, String productId) {
+    }
+
+    /**
+     * Apply the status change of the given orders (order id -> previous status) to the rollups.
+     * Must run in the transaction that changes the status; costs one read and at most two JDBC batches.
+     */
+    public void record(Map<String, OrderStatus> previousStatuses, OrderStatus status) {
+        boolean changed = previousStatuses.values().stream()
+                .anyMatch(previous -> sale(previous) != sale(status)
+                        || received(previous) != received(status)
+                        || canceled(previous) != canceled(status));
+        if (!changed) {
+            return;
+        }
+        Map<String, List<OrderItemSaleView>> itemsByOrder = orderRepository
+                .findItemSalesByOrderIdIn(previousStatuses.keySet()).stream()
+                .collect(Collectors.groupingBy(OrderItemSaleView::getOrderId));
+
+        Map<DailyKey, long[]> daily = new TreeMap<>(DAILY_ORDER);
+        Map<ProductKey, long[]> products = new TreeMap<>(PRODUCT_ORDER);
+        for (Map.Entry<String, List<OrderItemSaleView>> entry : itemsByOrder.entrySet()) {
+            OrderStatus previous = previousStatuses.get(entry.getKey());
+            int saleDelta = sale(status) - sale(previous);
+            int receivedDelta = received(status) - received(previous);
+            int canceledDelta = canceled(status) - canceled(previous);
+            if (saleDelta == 0 && receivedDelta == 0 && canceledDelta == 0) {
+                continue;
+            }
+            OrderItemSaleView order = entry.getValue().get(0);
+            LocalDate saleDate = order.getCreatedAt().toLocalDate();
+            long[] totals = daily.computeIfAbsent(new DailyKey(order.getFarmerId(), saleDate), key -> new long[5]);
+            totals[0] += (long) saleDelta * order.getTotalPrice();
+            totals[1] += (long) saleDelta * order.getTotalQuantity();
+            totals[2] += saleDelta;
+            totals[3] += receivedDelta;
+            totals[4] += canceledDelta;
+            if (saleDelta == 0) {
+                continue;
+            }
+            for (OrderItemSaleView item : entry.getValue()) {
+                long[] product = products.computeIfAbsent(
+                        new ProductKey(order.getFarmerId(), saleDate, item.getProductId()), key -> new long[3]);
+                product[0] += (long) saleDelta * item.getPrice() * item.getQuantity();
+                product[1] += (long) saleDelta * item.getQuantity();
+                product[2] += saleDelta;
+            }
+        }
+
+        List<Object[]> dailyRows = new ArrayList<>(daily.size());
+        daily.forEach((key, totals) -> dailyRows.add(new Object[] { key.farmerId(), Date.valueOf(key.saleDate()),
+                totals[0], totals[1], totals[2], totals[3], totals[4] }));
+        List<Object[]> productRows = new ArrayList<>(products.size());
+        products.forEach((key, totals) -> productRows.add(new Object[] { key.farmerId(),
+                Date.valueOf(key.saleDate()), key.productId(), totals[0], totals[1], totals[2] }));
+        salesRollupRepository.applyDaily(dailyRows);
+        salesRollupRepository.applyProduct(productRows);
+    }
+
+    private static int sale(OrderStatus status) {
+        return status == OrderStatus.DELIVERED || status == OrderStatus.RECEIVED ? 1 : 0;
+    }
+
+    private static int received(OrderStatus status) {
+        return status == OrderStatus.RECEIVED ? 1 : 0;
+    }
+
+    private static int canceled(OrderStatus status) {
+        return status == OrderStatus.CANCELED ? 1 : 0;
+    }
+
+    /**
+     * Analytics of the current farmer between from and to (inclusive, by order date), read from the rollups only
+     */
+    public FarmerAnalyticsResponse getAnalyticsOfFarmer(LocalDate from, LocalDate to,
+                                                        AnalyticsGranularity granularity) {
+        String farmerId = securityUtil.getFarmerId();
+        if (to == null) {
+            to = LocalDate.now();
+        }
+        if (from == null) {
+            from = to.minusDays(DEFAULT_RANGE_DAYS - 1);
+        }
+        if (granularity == null) {
+            granularity = AnalyticsGranularity.DAY;
+        }
+        if (from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Invalid analytics date range", "farmer-e-10");
+        }
+
+        Map<LocalDate, FarmerAnalyticsResponse.Point> series = new LinkedHashMap<>();
+        for (LocalDate period = periodOf(from, granularity); !period.isAfter(to);
+             period = nextPeriod(period, granularity)) {
+            series.put(period, new FarmerAnalyticsResponse.Point(period, 0, 0, 0, 0, 0));
+        }
+        FarmerAnalyticsResponse.Point total = new FarmerAnalyticsResponse.Point(from, 0, 0, 0, 0, 0);
+        for (FarmerSalesRollup rollup : farmerSalesRollupRepository.findAllInRange(farmerId, from, to)) {
+            add(series.get(periodOf(rollup.getId().getSaleDate(), granularity)), rollup);
+            add(total, rollup);
+        }
+
+        List<FarmerAnalyticsResponse.ProductSales> products = farmerProductSalesRollupRepository
+                .sumByProductInRange(farmerId, from, to).stream()
+                .map(view -> new FarmerAnalyticsResponse.ProductSales(view.getProductId(), view.getProductName(),
+                        view.getRevenue(), view.getUnits(), view.getOrderCount()))
+                .toList();
+        return FarmerAnalyticsResponse.builder()
+                .from(from)
+                .to(to)
+                .granularity(granularity)
+                .total(total)
+                .series(new ArrayList<>(series.values()))
+                .products(products)
+                .build();
+    }
+
+    private static void add(FarmerAnalyticsResponse.Point point, FarmerSalesRollup rollup) {
+        point.setRevenue(point.getRevenue() + rollup.getRevenue());
+        point.setUnits(point.getUnits() + rollup.getUnits());
+        point.setOrders(point.getOrders() + rollup.getOrderCount());
+        point.setReceivedOrders(point.getReceivedOrders() + rollup.getReceivedCount());
+        point.setCanceledOrders(point.getCanceledOrders() + rollup.getCanceledCount());
+    }
+
+    private static LocalDate periodOf(LocalDate date, AnalyticsGranularity granularity) {
+        return switch (granularity) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    private static LocalDate nextPeriod(LocalDate period, AnalyticsGranularity granularity) {
+        return switch (granularity) {
+            case DAY -> period.plusDays(1);
+            case WEEK -> period.plusWeeks(1);
+            case MONTH -> period.plusMonths(1);
+        };
+    }
+
+    /**
+     * Recompute all rollups from orders/order_item in one transaction. Incremental updates
+     * that arrive meanwhile wait on the rollup row locks and are applied on top of the rebuilt rows.
+     */
+    @Transactional
+    public AnalyticsRebuildResponse rebuild() {
+        long start = System.currentTimeMillis();
+        int[] rows = salesRollupRepository.rebuild();
+        long durationMs = System.currentTimeMillis() - start;
+        log.info("Rebuilt farmer sales rollups: {} daily rows, {} product rows in {} ms", rows[0], rows[1],
+                durationMs);
+        return AnalyticsRebuildResponse.builder()
+                .dailyRows(rows[0])
+                .productRows(rows[1])
+                .durationMs(durationMs)
+                .build();
+    }
+}
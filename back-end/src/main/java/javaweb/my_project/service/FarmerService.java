@@ -2,10 +2,12 @@ package javaweb.my_project.service;
 
 import javaweb.my_project.dto.address.AddressRequest;
 import javaweb.my_project.dto.address.AddressResponse;
+import javaweb.my_project.dto.api.ResourceVersion;
 import javaweb.my_project.dto.farmer.ChangeFarmerStatusRequest;
 import javaweb.my_project.dto.farmer.FarmerUpdateInfoPatchRequest;
 import javaweb.my_project.dto.farmer.FarmerUpdateInfoPutRequest;
 import javaweb.my_project.dto.farmer.FarmerResponse;
+import javaweb.my_project.dto.farmer.FarmerVersionView;
 import javaweb.my_project.entities.Address;
 import javaweb.my_project.entities.Farmer;
 import javaweb.my_project.enums.FarmerStatus;
@@ -14,11 +16,15 @@ import javaweb.my_project.mapper.AddressMapper;
 import javaweb.my_project.mapper.FarmerMapper;
 import javaweb.my_project.repository.AddressRepository;
 import javaweb.my_project.repository.FarmerRepository;
+import javaweb.my_project.repository.ProductRepository;
 import javaweb.my_project.security.SecurityUtil;
+import javaweb.my_project.util.ProductCacheUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -32,6 +38,8 @@ public class FarmerService {
     private final FarmerMapper farmerMapper;
     private final AddressMapper addressMapper;
     private final AddressRepository addressRepository;
+    private final ProductRepository productRepository;
+    private final ProductCacheUtil productCacheUtil;
 
     public FarmerResponse getFarmer(String id) {
         Farmer farmer = farmerRepository.findById(id).orElseThrow(
@@ -39,6 +47,12 @@ public class FarmerService {
         return farmerMapper.toFarmerResponse(farmer);
     }
 
+    public ResourceVersion getFarmerVersion(String id) {
+        FarmerVersionView view = farmerRepository.findVersionById(id).orElseThrow(
+                () -> new AppException(HttpStatus.NOT_FOUND, "Farmer not found", "farmer-e-01"));
+        return ResourceVersion.of("farmer-" + id + "-" + view.getVersion(), view.getUpdatedAt());
+    }
+
     public FarmerResponse getFarmerByOwner() {
         Farmer farmer = securityUtil.getFarmer();
         return farmerMapper.toFarmerResponse(farmer);
@@ -49,6 +63,7 @@ public class FarmerService {
         return farmerMapper.toFarmerResponseList(farmers);
     }
 
+    @Transactional
     public FarmerResponse createAddress(AddressRequest request) {
         Farmer farmer = securityUtil.getFarmer();
 
@@ -63,10 +78,12 @@ public class FarmerService {
 
         farmer.setAddress(savedAddress);
         farmerRepository.save(farmer);
+        evictProducts(farmer);
 
         return farmerMapper.toFarmerResponse(farmer);
     }
 
+    @Transactional
     public AddressResponse updateAddress(String addressId, AddressRequest request) {
         Farmer farmer = securityUtil.getFarmer();
 
@@ -78,10 +95,15 @@ public class FarmerService {
         addressMapper.updateAddress(address, request);
         address.setIsDefault(true); // Farmer's address is always default
         Address updatedAddress = addressRepository.save(address);
+        // Địa chỉ nằm trong FarmerResponse nên tăng version của farmer (ETag)
+        farmer.setUpdatedAt(LocalDateTime.now());
+        farmerRepository.save(farmer);
+        evictProducts(farmer);
 
         return addressMapper.toAddressResponse(updatedAddress);
     }
 
+    @Transactional
     public void deleteAddress(String addressId) {
         Farmer farmer = securityUtil.getFarmer();
 
@@ -93,15 +115,19 @@ public class FarmerService {
         farmer.setAddress(null);
         farmerRepository.save(farmer);
         addressRepository.delete(addressToDelete);
+        evictProducts(farmer);
     }
 
+    @Transactional
     public FarmerResponse updateFarmerInfoPut(FarmerUpdateInfoPutRequest request) {
         Farmer farmer = securityUtil.getFarmer();
         farmerMapper.updateFarmer(farmer, request);
         farmerRepository.save(farmer);
+        evictProducts(farmer);
         return farmerMapper.toFarmerResponse(farmer);
     }
 
+    @Transactional
     public FarmerResponse updateFarmerInfoPatch(FarmerUpdateInfoPatchRequest request) {
         Farmer farmer = securityUtil.getFarmer();
         if (request.getName() != null) {
@@ -117,9 +143,11 @@ public class FarmerService {
             farmer.setDescription(request.getDescription());
         }
         farmerRepository.save(farmer);
+        evictProducts(farmer);
         return farmerMapper.toFarmerResponse(farmer);
     }
 
+    @Transactional
     public FarmerResponse changeFarmerStatus(String farmerId, ChangeFarmerStatusRequest request) {
         Farmer farmer = farmerRepository.findById(farmerId).orElseThrow(
                 () -> new AppException(HttpStatus.NOT_FOUND, "Farmer not found", "farmer-e-01"));
@@ -135,6 +163,12 @@ public class FarmerService {
         }
         farmer.setStatus(request.getStatus());
         farmerRepository.save(farmer);
+        evictProducts(farmer);
         return farmerMapper.toFarmerResponse(farmer);
     }
+
+    // ProductResponse nhúng FarmerResponse: xoá cache chi tiết sản phẩm của farmer ngay và sau commit
+    private void evictProducts(Farmer farmer) {
+        productCacheUtil.evictAll(productRepository.findIdsByFarmerId(farmer.getId()));
+    }
 }
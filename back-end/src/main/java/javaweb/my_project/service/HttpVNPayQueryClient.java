@@ -0,0 +1,127 @@
+package javaweb.my_project.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javaweb.my_project.config.VNPayConfig;
+import javaweb.my_project.dto.payment.VNPayQueryResult;
+import javaweb.my_project.util.VNPayUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * querydr over the VNPAY merchant API: JSON body signed with HMAC-SHA512 over the '|'-joined fields,
+ * response signature checked the same way
+ */
+@Component
+public class HttpVNPayQueryClient implements VNPayQueryClient {
+    private static final String COMMAND = "querydr";
+    private static final String SERVER_IP = "127.0.0.1";
+
+    private final VNPayConfig vnPayConfig;
+    private final VNPayUtil vnPayUtil;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    public HttpVNPayQueryClient(VNPayConfig vnPayConfig,
+                                VNPayUtil vnPayUtil,
+                                ObjectMapper objectMapper,
+                                @Value("${app.reconciliation.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                @Value("${app.reconciliation.request-timeout-ms:10000}") long requestTimeoutMs) {
+        this.vnPayConfig = vnPayConfig;
+        this.vnPayUtil = vnPayUtil;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+    }
+
+    @Override
+    public VNPayQueryResult query(String txnRef, LocalDateTime transactionDate) {
+        String requestId = UUID.randomUUID().toString().replace("-", "");
+        String createDate = LocalDateTime.now(VNPayUtil.ZONE).format(VNPayUtil.DATE_FORMAT);
+        String orderInfo = "Truy van giao dich " + txnRef;
+
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("vnp_RequestId", requestId);
+        body.put("vnp_Version", vnPayConfig.getVersion());
+        body.put("vnp_Command", COMMAND);
+        body.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+        body.put("vnp_TxnRef", txnRef);
+        body.put("vnp_OrderInfo", orderInfo);
+        body.put("vnp_TransactionDate", transactionDate.format(VNPayUtil.DATE_FORMAT));
+        body.put("vnp_CreateDate", createDate);
+        body.put("vnp_IpAddr", SERVER_IP);
+        body.put("vnp_SecureHash", vnPayUtil.sign(String.join("|", requestId, vnPayConfig.getVersion(), COMMAND,
+                vnPayConfig.getTmnCode(), txnRef, body.get("vnp_TransactionDate"), createDate, SERVER_IP, orderInfo)));
+
+        Map<String, Object> response;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(vnPayConfig.getQueryUrl()))
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            HttpResponse<String> httpResponse = httpClient.send(request,
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            if (httpResponse.statusCode() != 200) {
+                throw new IllegalStateException("querydr " + txnRef + " returned HTTP " + httpResponse.statusCode());
+            }
+            response = objectMapper.readValue(httpResponse.body(), new TypeReference<>() {
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("querydr " + txnRef + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("querydr " + txnRef + " interrupted", e);
+        }
+
+        // Chuỗi ký của response theo thứ tự cố định trong tài liệu VNPAY, trường thiếu là chuỗi rỗng
+        String data = String.join("|", field(response, "vnp_ResponseId"), field(response, "vnp_Command"),
+                field(response, "vnp_ResponseCode"), field(response, "vnp_Message"), field(response, "vnp_TmnCode"),
+                field(response, "vnp_TxnRef"), field(response, "vnp_Amount"), field(response, "vnp_BankCode"),
+                field(response, "vnp_PayDate"), field(response, "vnp_TransactionNo"),
+                field(response, "vnp_TransactionType"), field(response, "vnp_TransactionStatus"),
+                field(response, "vnp_OrderInfo"), field(response, "vnp_PromotionCode"),
+                field(response, "vnp_PromotionAmount"));
+        if (!MessageDigest.isEqual(vnPayUtil.sign(data).getBytes(StandardCharsets.US_ASCII),
+                field(response, "vnp_SecureHash").getBytes(StandardCharsets.US_ASCII))) {
+            throw new IllegalStateException("querydr " + txnRef + " returned an invalid signature");
+        }
+        String responseTxnRef = field(response, "vnp_TxnRef");
+        if (!responseTxnRef.isEmpty() && !txnRef.equals(responseTxnRef)) {
+            throw new IllegalStateException("querydr " + txnRef + " answered for " + responseTxnRef);
+        }
+
+        String amount = field(response, "vnp_Amount");
+        return VNPayQueryResult.builder()
+                .txnRef(txnRef)
+                .responseCode(field(response, "vnp_ResponseCode"))
+                .message(field(response, "vnp_Message"))
+                .transactionStatus(field(response, "vnp_TransactionStatus"))
+                .transactionNo(field(response, "vnp_TransactionNo"))
+                .amount(amount.isEmpty() ? null : Long.parseLong(amount))
+                .bankCode(field(response, "vnp_BankCode"))
+                .payDate(field(response, "vnp_PayDate"))
+                .build();
+    }
+
+    private static String field(Map<String, Object> response, String name) {
+        Object value = response.get(name);
+        return value == null ? "" : value.toString();
+    }
+}
@@ -0,0 +1,261 @@
+package javaweb.my_project.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javaweb.my_project.entities.IdempotencyRecord;
+import javaweb.my_project.enums.IdempotencyStatus;
+import javaweb.my_project.exception.AppException;
+import javaweb.my_project.repository.IdempotencyRecordRepository;
+import javaweb.my_project.security.SecurityUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key support for non-idempotent POST endpoints.
+ * <p>
+ * A bounded in-memory map gives single-flight within one instance: the first request for a key
+ * executes, concurrent duplicates wait for its result and later replays get the stored response.
+ * The idempotency_record table extends this across instances: the executing request claims the
+ * key with an IN_PROGRESS row and stores its response in the same transaction as the action,
+ * so a committed order always has its replayable response.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final SecurityUtil securityUtil;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    // Ghi nhận/giải phóng quyền thực thi ngay, độc lập với transaction của action
+    private final TransactionTemplate claimTransactionTemplate;
+    private final Duration ttl;
+    private final Duration lease;
+    private final long waitSeconds;
+    private final int maxEntries;
+
+    // Thứ tự chèn, bỏ entry cũ nhất khi vượt maxEntries; mọi thao tác đều synchronized trên entries
+    private final Map<String, LocalEntry> entries;
+
+    private static final class LocalEntry {
+        final String fingerprint;
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        // Entry đang chạy không hết hạn
+        volatile LocalDateTime expiresAt = LocalDateTime.MAX;
+
+        LocalEntry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              SecurityUtil securityUtil,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${app.idempotency.lease-seconds:60}") long leaseSeconds,
+                              @Value("${app.idempotency.wait-seconds:30}") long waitSeconds,
+                              @Value("${app.idempotency.max-entries:10000}") int maxEntries) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.securityUtil = securityUtil;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.claimTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.claimTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.waitSeconds = waitSeconds;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+                return size() > IdempotencyService.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Run the action at most once per (scope, account, key). Without a key the action simply runs.
+     * The same key with a different request is rejected (idempotency-e-02); a key that is still
+     * executing on another instance returns 409 (idempotency-e-03) and the client should retry later.
+     */
+    public <T> T execute(String scope, String key, Object request, Class<T> responseType, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Invalid Idempotency-Key", "idempotency-e-01");
+        }
+        String id = scope + ":" + securityUtil.getAccountId() + ":" + key;
+        String fingerprint = fingerprint(scope, request);
+
+        LocalEntry entry = new LocalEntry(fingerprint);
+        LocalEntry existing;
+        synchronized (entries) {
+            existing = entries.get(id);
+            if (existing != null && existing.expiresAt.isBefore(LocalDateTime.now())) {
+                entries.remove(id);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(id, entry);
+            }
+        }
+        if (existing != null) {
+            return replay(existing, fingerprint, responseType);
+        }
+
+        try {
+            String response = executeOnce(id, fingerprint, action);
+            entry.expiresAt = LocalDateTime.now().plus(ttl);
+            entry.response.complete(response);
+            return read(response, responseType);
+        } catch (RuntimeException e) {
+            // Lỗi không được lưu lại: request đang chờ nhận cùng lỗi, lần gửi lại sau sẽ chạy lại
+            synchronized (entries) {
+                entries.remove(id, entry);
+            }
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private String executeOnce(String id, String fingerprint, Supplier<?> action) {
+        IdempotencyRecord completed = claim(id, fingerprint);
+        if (completed != null) {
+            return completed.getResponse();
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                String response = write(action.get());
+                idempotencyRecordRepository.complete(id, response, LocalDateTime.now().plus(ttl));
+                return response;
+            });
+        } catch (RuntimeException e) {
+            claimTransactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.release(id));
+            throw e;
+        }
+    }
+
+    /**
+     * Claim the key in the shared table. Returns null when this instance may execute,
+     * or the completed record of an earlier request with the same key
+     */
+    private IdempotencyRecord claim(String id, String fingerprint) {
+        return claimTransactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            // Bản ghi hết hạn (kể cả IN_PROGRESS của instance đã dừng) thì được lấy lại
+            idempotencyRecordRepository.deleteIfExpired(id, now);
+            if (idempotencyRecordRepository.insertIfAbsent(id, fingerprint, now, now.plus(lease)) == 1) {
+                return null;
+            }
+            IdempotencyRecord record = idempotencyRecordRepository.findById(id).orElseThrow(
+                    () -> inProgress());
+            if (!fingerprint.equals(record.getFingerprint())) {
+                throw mismatch();
+            }
+            if (record.getStatus() != IdempotencyStatus.COMPLETED) {
+                throw inProgress();
+            }
+            return record;
+        });
+    }
+
+    private <T> T replay(LocalEntry entry, String fingerprint, Class<T> responseType) {
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw mismatch();
+        }
+        try {
+            return read(entry.response.get(waitSeconds, TimeUnit.SECONDS), responseType);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new AppException(e.getMessage());
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw inProgress();
+        }
+    }
+
+    private static AppException mismatch() {
+        return new AppException(HttpStatus.UNPROCESSABLE_ENTITY,
+                "Idempotency-Key was already used with a different request", "idempotency-e-02");
+    }
+
+    private static AppException inProgress() {
+        return new AppException(HttpStatus.CONFLICT,
+                "A request with this Idempotency-Key is still being processed", "idempotency-e-03");
+    }
+
+    private String fingerprint(String scope, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(scope.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new AppException("Cannot fingerprint request: " + e.getMessage());
+        }
+    }
+
+    private String write(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new AppException("Cannot serialize response: " + e.getMessage());
+        }
+    }
+
+    private <T> T read(String response, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(response, responseType);
+        } catch (JsonProcessingException e) {
+            throw new AppException("Cannot read stored response: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.expiresAt.isBefore(now));
+        }
+        int deleted;
+        int total = 0;
+        do {
+            Integer count = transactionTemplate.execute(
+                    status -> idempotencyRecordRepository.deleteExpired(now, PURGE_BATCH_SIZE));
+            deleted = count == null ? 0 : count;
+            total += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+        if (total > 0) {
+            log.info("Purged {} expired idempotency records", total);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.dto.order.OrderItemQuantityView;
+import javaweb.my_project.entities.Order;
+import javaweb.my_project.entities.OrderItem;
+import javaweb.my_project.enums.OrderStatus;
+import javaweb.my_project.enums.PaymentMethod;
+import javaweb.my_project.enums.PaymentStatus;
+import javaweb.my_project.repository.OrderRepository;
+import javaweb.my_project.repository.ProductInventoryRepository;
+import javaweb.my_project.util.PaymentUrlCache;
+import javaweb.my_project.util.ProductCacheUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds stock for unpaid VNPAY orders for a limited time. The hold is the
+ * inventory decrement done at checkout plus an expiry timestamp on the order;
+ * a scheduled sweep walks the indexed expiry column in chunks, cancels the
+ * expired orders and gives their stock back.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryReservationService {
+    public static final String EXPIRED_REASON = "Payment time expired";
+    public static final String LATE_PAYMENT_REASON = "Payment received after reservation expired, refund required";
+    private static final int SWEEP_BATCH_SIZE = 200;
+
+    private final OrderRepository orderRepository;
+    private final ProductInventoryRepository productInventoryRepository;
+    private final ProductCacheUtil productCacheUtil;
+    private final TransactionTemplate transactionTemplate;
+    private final FarmerAnalyticsService farmerAnalyticsService;
+    private final PaymentUrlCache paymentUrlCache;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+
+    // Lớn hơn thời hạn vnp_ExpireDate (15 phút) để IPN trễ vẫn kịp xác nhận
+    @Value("${app.reservation.ttl-minutes:20}")
+    private long ttlMinutes;
+
+    /**
+     * Start a hold on a new order (only VNPAY orders are held, COD keeps the stock)
+     */
+    public void hold(Order order) {
+        if (order.getPaymentMethod() == PaymentMethod.VNPAY) {
+            order.setReservationExpiresAt(LocalDateTime.now().plusMinutes(ttlMinutes));
+        }
+    }
+
+    /**
+     * Payment confirmed: the stock stays decremented and the hold is removed from the sweep.
+     * The order must be locked by the caller. Returns false when the hold had already been
+     * released and the stock could not be taken again.
+     */
+    public boolean commit(Order order) {
+        if (order.getStatus() == OrderStatus.CANCELED && EXPIRED_REASON.equals(order.getLastStatusChangeReason())) {
+            Map<String, Integer> quantities = new HashMap<>();
+            for (OrderItem orderItem : order.getOrderItems()) {
+                quantities.merge(orderItem.getProduct().getId(), orderItem.getQuantity(), Integer::sum);
+            }
+            if (!productInventoryRepository.decrement(quantities).isEmpty()) {
+                order.setLastStatusChangeReason(LATE_PAYMENT_REASON);
+                return false;
+            }
+            quantities.keySet().forEach(productCacheUtil::evict);
+            farmerAnalyticsService.record(Map.of(order.getId(), OrderStatus.CANCELED), OrderStatus.PENDING);
+            order.setStatus(OrderStatus.PENDING);
+            order.setLastStatusChangeReason("");
+        }
+        order.setReservationExpiresAt(null);
+        return true;
+    }
+
+    /**
+     * Release the hold without touching stock (the caller restores inventory itself)
+     */
+    public void clear(Order order) {
+        order.setReservationExpiresAt(null);
+    }
+
+    @Scheduled(fixedDelayString = "${app.reservation.sweep-interval-ms:30000}")
+    public void releaseExpired() {
+        int released;
+        int total = 0;
+        do {
+            Integer count = transactionTemplate.execute(status -> releaseExpiredBatch(LocalDateTime.now()));
+            released = count == null ? 0 : count;
+            total += released;
+        } while (released == SWEEP_BATCH_SIZE);
+        if (total > 0) {
+            log.info("Released {} expired inventory reservations", total);
+        }
+    }
+
+    /**
+     * One chunk: lock expired orders, cancel them and restore their stock with a constant number of statements
+     */
+    int releaseExpiredBatch(LocalDateTime now) {
+        List<String> orderIds = orderRepository.lockExpiredReservations(now, SWEEP_BATCH_SIZE);
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        orderRepository.cancelExpiredReservations(orderIds, EXPIRED_REASON);
+        paymentUrlCache.evict(orderIds);
+        paymentStatusNotifier.publishAfterCommit(orderIds, PaymentStatus.CANCELED);
+        Map<String, OrderStatus> previousStatuses = new HashMap<>();
+        orderIds.forEach(orderId -> previousStatuses.put(orderId, OrderStatus.PENDING));
+        farmerAnalyticsService.record(previousStatuses, OrderStatus.CANCELED);
+        Map<String, Integer> quantities = new HashMap<>();
+        for (OrderItemQuantityView item : orderRepository.findItemQuantitiesByOrderIdIn(orderIds)) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        productInventoryRepository.increment(quantities);
+        quantities.keySet().forEach(productCacheUtil::evict);
+        return orderIds.size();
+    }
+}
@@ -0,0 +1,70 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.dto.email.SendEmailDto;
+import javaweb.my_project.dto.order.OrderContactView;
+import javaweb.my_project.enums.OrderStatus;
+import javaweb.my_project.enums.OutboxEventType;
+import javaweb.my_project.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Order emails written to the outbox in the transaction of the order change,
+ * so SMTP is never on the request path. Costs one read for any number of orders.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderNotificationService {
+    private static final Map<OrderStatus, String> STATUS_LABELS = Map.of(
+            OrderStatus.PENDING, "Chờ xác nhận",
+            OrderStatus.CONFIRMED, "Đã xác nhận",
+            OrderStatus.DELIVERING, "Đang giao hàng",
+            OrderStatus.DELIVERED, "Đã giao hàng",
+            OrderStatus.RECEIVED, "Đã nhận hàng",
+            OrderStatus.CANCELED, "Đã huỷ");
+
+    private final OrderRepository orderRepository;
+    private final OutboxService outboxService;
+
+    /**
+     * Tell each farmer about their new orders
+     */
+    public void orderPlaced(Collection<String> orderIds) {
+        for (OrderContactView contact : orderRepository.findContactsByIdIn(orderIds)) {
+            String text = "Bạn có đơn hàng mới #" + contact.getOrderId() + "<br>"
+                    + "Số lượng: " + contact.getTotalQuantity() + "<br>"
+                    + "Tổng tiền: " + contact.getTotalPrice() + " đ";
+            enqueue(contact.getOrderId(), contact.getFarmerEmail(), "Đơn hàng mới", text);
+        }
+    }
+
+    /**
+     * Tell the other party about a status change: the consumer when the farmer changed it, otherwise the farmer
+     */
+    public void statusChanged(Collection<String> orderIds, OrderStatus status, String reason, boolean byFarmer) {
+        for (OrderContactView contact : orderRepository.findContactsByIdIn(orderIds)) {
+            String text = "Đơn hàng #" + contact.getOrderId() + " đã chuyển sang trạng thái: "
+                    + STATUS_LABELS.get(status);
+            if (reason != null && !reason.isBlank()) {
+                text = text + "<br>Lý do: " + HtmlUtils.htmlEscape(reason);
+            }
+            String to = byFarmer ? contact.getConsumerEmail() : contact.getFarmerEmail();
+            enqueue(contact.getOrderId(), to, "Cập nhật đơn hàng", text);
+        }
+    }
+
+    private void enqueue(String orderId, String to, String subject, String text) {
+        if (to == null || to.isBlank()) {
+            return;
+        }
+        outboxService.enqueue(OutboxEventType.EMAIL, orderId, SendEmailDto.builder()
+                .to(to)
+                .subject(subject)
+                .text(text)
+                .build());
+    }
+}
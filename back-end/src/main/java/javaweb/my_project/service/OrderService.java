@@ -1,9 +1,17 @@
 package javaweb.my_project.service;
 
 import jakarta.transaction.Transactional;
+import javaweb.my_project.dto.api.PageResponse;
+import javaweb.my_project.dto.order.BulkChangeOrderStatusRequest;
+import javaweb.my_project.dto.order.BulkChangeOrderStatusResponse;
 import javaweb.my_project.dto.order.ChangeOrderStatusRequest;
+import javaweb.my_project.dto.order.CheckoutRequest;
+import javaweb.my_project.dto.order.CheckoutResponse;
+import javaweb.my_project.dto.order.OrderHistoryFilter;
+import javaweb.my_project.dto.order.OrderItemQuantityView;
 import javaweb.my_project.dto.order.OrderRequest;
 import javaweb.my_project.dto.order.OrderResponse;
+import javaweb.my_project.dto.order.OrderStatusView;
 import javaweb.my_project.entities.*;
 import javaweb.my_project.entities.embeddedId.OrderItemId;
 import javaweb.my_project.enums.OrderStatus;
@@ -13,83 +21,188 @@ import javaweb.my_project.exception.AppException;
 import javaweb.my_project.mapper.OrderMapper;
 import javaweb.my_project.repository.*;
 import javaweb.my_project.security.SecurityUtil;
+import javaweb.my_project.util.CursorUtil;
+import javaweb.my_project.util.OrderStateMachine;
+import javaweb.my_project.util.PaymentUrlCache;
+import javaweb.my_project.util.ProductCacheUtil;
+import javaweb.my_project.util.ProductCounterBuffer;
+import javaweb.my_project.util.TransactionUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
     private final OrderRepository orderRepository;
     private final CartItemRepository cartItemRepository;
     private final AddressRepository addressRepository;
     private final FarmerRepository farmerRepository;
     private final ProductRepository productRepository;
+    private final ProductInventoryRepository productInventoryRepository;
+    private final InventoryReservationService inventoryReservationService;
     private final OrderMapper orderMapper;
     private final SecurityUtil securityUtil;
+    private final ProductCacheUtil productCacheUtil;
+    private final PaymentUrlCache paymentUrlCache;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final ProductCounterBuffer productCounterBuffer;
+    private final FarmerAnalyticsService farmerAnalyticsService;
+    private final OrderNotificationService orderNotificationService;
 
+    /**
+     * Checkout theo lô cho một farmer: xem {@link #placeOrders}
+     */
     @Transactional
     public OrderResponse create(OrderRequest request) {
-        Address address = addressRepository.findById(request.getAddressId()).orElseThrow(
-                () -> new AppException(HttpStatus.NOT_FOUND, "Address not found", "address-e-01"));
+        validatePaymentMethod(request.getPaymentMethod());
+        Address address = findAddressById(request.getAddressId());
         Farmer farmer = farmerRepository.findById(request.getFarmerId()).orElseThrow(
                 () -> new AppException(HttpStatus.NOT_FOUND, "Farmer not found", "farmer-e-01"));
         Account account = securityUtil.getAccount();
-        int totalPrice = 0;
-        int totalQuantity = 0;
 
-        Set<OrderItem> orderItems = new HashSet<>();
+        List<CartItem> cartItems = findCartItems(request.getItems(), account);
+        for (CartItem cartItem : cartItems) {
+            if (!cartItem.getProduct().getFarmer().getId().equals(farmer.getId())) {
+                throw new AppException(HttpStatus.BAD_REQUEST, "Cart item does not belong to this farmer",
+                        "order-e-07");
+            }
+        }
+        Order order = placeOrders(cartItems, address, account, request.getNote(), request.getPaymentMethod(), null)
+                .get(0);
+        return orderMapper.toOrderResponse(order);
+    }
 
-        // Validate payment method first
+    /**
+     * Checkout cả giỏ hàng: tách theo farmer của sản phẩm, tạo tất cả đơn trong 1 transaction.
+     * Với VNPAY các đơn dùng chung một paymentReference để thanh toán một lần
+     */
+    @Transactional
+    public CheckoutResponse checkout(CheckoutRequest request) {
+        validatePaymentMethod(request.getPaymentMethod());
+        Address address = findAddressById(request.getAddressId());
+        Account account = securityUtil.getAccount();
+
+        List<CartItem> cartItems = findCartItems(request.getItems(), account);
+        String paymentReference = request.getPaymentMethod() == PaymentMethod.VNPAY
+                ? UUID.randomUUID().toString()
+                : null;
+        List<Order> orders = placeOrders(cartItems, address, account, request.getNote(),
+                request.getPaymentMethod(), paymentReference);
+        return CheckoutResponse.builder()
+                .orders(orderMapper.toOrderResponseList(orders))
+                .totalPrice(orders.stream().mapToInt(Order::getTotalPrice).sum())
+                .paymentReference(paymentReference)
+                .build();
+    }
+
+    private void validatePaymentMethod(PaymentMethod paymentMethod) {
         Set<PaymentMethod> paymentMethods = Set.of(PaymentMethod.COD, PaymentMethod.VNPAY);
-        if (!paymentMethods.contains(request.getPaymentMethod())) {
+        if (!paymentMethods.contains(paymentMethod)) {
             throw new AppException(HttpStatus.BAD_REQUEST, "Invalid payment method", "order-e-01");
         }
+    }
 
-        Order order = Order.builder()
-                .note(request.getNote())
-                .address(address)
-                .account(account)
-                .farmer(farmer)
-                .paymentMethod(request.getPaymentMethod())
-                .build();
-        order = orderRepository.save(order);
+    private Address findAddressById(String addressId) {
+        return addressRepository.findById(addressId).orElseThrow(
+                () -> new AppException(HttpStatus.NOT_FOUND, "Address not found", "address-e-01"));
+    }
 
-        for (OrderRequest.OrderItemDTO orderItemDTO : request.getItems()) {
-            CartItem cartItem = cartItemRepository.findById(orderItemDTO.getCartItemId()).orElseThrow(
-                    () -> new AppException(HttpStatus.NOT_FOUND, "Cart item not found", "cart-item-e-01"));
+    // 1 câu đọc cart item + product; cart item không tồn tại hoặc thuộc account khác đều trả về not found
+    private List<CartItem> findCartItems(List<OrderRequest.OrderItemDTO> items, Account account) {
+        Set<String> cartItemIds = items.stream()
+                .map(OrderRequest.OrderItemDTO::getCartItemId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        List<CartItem> cartItems = cartItemRepository.findAllWithProductByIdInAndAccountId(cartItemIds,
+                account.getId());
+        if (cartItems.size() != cartItemIds.size()) {
+            throw new AppException(HttpStatus.NOT_FOUND, "Cart item not found", "cart-item-e-01");
+        }
+        return cartItems;
+    }
+
+    /**
+     * Tạo đơn cho từng farmer từ các cart item đã kiểm tra: trừ tồn kho có điều kiện cho tất cả dòng trong
+     * 1 JDBC batch, insert order và order item theo batch, xoá cart item bằng 1 câu DELETE.
+     * Số câu lệnh không phụ thuộc số dòng trong giỏ. Đơn hàng là all-or-nothing: không đủ hàng cho một dòng
+     * thì không trừ kho dòng nào (order-e-08)
+     */
+    private List<Order> placeOrders(List<CartItem> cartItems, Address address, Account account, String note,
+                                    PaymentMethod paymentMethod, String paymentReference) {
+        Map<String, Integer> quantities = new HashMap<>();
+        Map<String, List<CartItem>> cartItemsByFarmer = new LinkedHashMap<>();
+        for (CartItem cartItem : cartItems) {
             Product product = cartItem.getProduct();
-            if (cartItem.getQuantity() > product.getInventory()) {
-                cartItem.setQuantity(product.getInventory());
+            quantities.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
+            cartItemsByFarmer.computeIfAbsent(product.getFarmer().getId(), farmerId -> new ArrayList<>())
+                    .add(cartItem);
+        }
+
+        // Trừ tồn kho có điều kiện ngay trong SQL: thiếu hàng ở bất kỳ dòng nào thì huỷ cả lần checkout (rollback)
+        List<String> insufficient = productInventoryRepository.decrement(quantities);
+        if (!insufficient.isEmpty()) {
+            String names = cartItems.stream()
+                    .map(CartItem::getProduct)
+                    .filter(product -> insufficient.contains(product.getId()))
+                    .map(Product::getName)
+                    .collect(Collectors.joining(", "));
+            throw new AppException(HttpStatus.CONFLICT, "Insufficient inventory for: " + names, "order-e-08");
+        }
+        quantities.keySet().forEach(productCacheUtil::evict);
+
+        List<Order> orders = new ArrayList<>();
+        for (List<CartItem> farmerCartItems : cartItemsByFarmer.values()) {
+            int totalPrice = 0;
+            int totalQuantity = 0;
+            for (CartItem cartItem : farmerCartItems) {
+                totalQuantity = totalQuantity + cartItem.getQuantity();
+                totalPrice = totalPrice + (cartItem.getProduct().getPrice() * cartItem.getQuantity());
             }
-            product.setInventory(product.getInventory() - cartItem.getQuantity());
-            productRepository.save(product);
-            totalQuantity = totalQuantity + cartItem.getQuantity();
-            totalPrice = totalPrice + (product.getPrice() * cartItem.getQuantity());
-            OrderItemId orderItemId = OrderItemId.builder()
-                    .orderItemOrderId(order.getId())
-                    .orderItemProductId(product.getId())
-                    .build();
-            OrderItem orderItem = OrderItem.builder()
-                    .orderItemId(orderItemId)
-                    .product(product)
-                    .order(order)
-                    .quantity(cartItem.getQuantity())
+
+            // Tính tổng trước khi persist để order chỉ được INSERT 1 lần
+            Order order = Order.builder()
+                    .note(note)
+                    .address(address)
+                    .account(account)
+                    .farmer(farmerCartItems.get(0).getProduct().getFarmer())
+                    .paymentMethod(paymentMethod)
+                    .paymentReference(paymentReference)
+                    .totalPrice(totalPrice)
+                    .totalQuantity(totalQuantity)
                     .build();
-            orderItems.add(orderItem);
-            cartItemRepository.deleteById(cartItem.getId());
-        }
+            inventoryReservationService.hold(order);
+            order = orderRepository.save(order);
 
-        order.setTotalPrice(totalPrice);
-        order.setTotalQuantity(totalQuantity);
-        order.setOrderItems(orderItems);
-        orderRepository.save(order);
-        return orderMapper.toOrderResponse(order);
+            for (CartItem cartItem : farmerCartItems) {
+                Product product = cartItem.getProduct();
+                OrderItemId orderItemId = OrderItemId.builder()
+                        .orderItemOrderId(order.getId())
+                        .orderItemProductId(product.getId())
+                        .build();
+                OrderItem orderItem = OrderItem.builder()
+                        .orderItemId(orderItemId)
+                        .product(product)
+                        .order(order)
+                        .quantity(cartItem.getQuantity())
+                        .price(product.getPrice())
+                        .build();
+                // Order item được cascade persist khi flush, insert theo JDBC batch
+                order.getOrderItems().add(orderItem);
+            }
+            orders.add(order);
+        }
+        cartItemRepository.deleteAllByIdInBatch(cartItems.stream().map(CartItem::getId).toList());
+        orderNotificationService.orderPlaced(orders.stream().map(Order::getId).toList());
+        return orders;
     }
 
     public List<OrderResponse> getAllOfAccount() {
@@ -98,6 +211,72 @@ public class OrderService {
         return orderMapper.toOrderResponseList(orders);
     }
 
+    public PageResponse<OrderResponse> getHistoryOfAccount(OrderHistoryFilter filter, String cursor, int size) {
+        return getHistory(securityUtil.getAccountId(), null, filter, cursor, size);
+    }
+
+    public PageResponse<OrderResponse> getHistoryOfFarmer(OrderHistoryFilter filter, String cursor, int size) {
+        return getHistory(null, securityUtil.getFarmerId(), filter, cursor, size);
+    }
+
+    public PageResponse<OrderResponse> getHistoryByFarmerId(String farmerId, OrderHistoryFilter filter,
+                                                            String cursor, int size) {
+        return getHistory(null, farmerId, filter, cursor, size);
+    }
+
+    public PageResponse<OrderResponse> getHistory(OrderHistoryFilter filter, String cursor, int size) {
+        return getHistory(null, null, filter, cursor, size);
+    }
+
+    /**
+     * Keyset pagination (createdAt, id) giảm dần: lấy trang id trước, sau đó fetch-join đồ thị của trang
+     */
+    private PageResponse<OrderResponse> getHistory(String accountId, String farmerId, OrderHistoryFilter filter,
+                                                   String cursor, int size) {
+        if (size <= 0) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Page size must be greater than 0", "global-e-04");
+        }
+        size = Math.min(size, MAX_HISTORY_PAGE_SIZE);
+        LocalDateTime cursorCreatedAt = null;
+        String cursorId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = CursorUtil.decode(cursor, 2);
+            try {
+                cursorCreatedAt = LocalDateTime.parse(parts[0]);
+            } catch (RuntimeException e) {
+                throw new AppException(HttpStatus.BAD_REQUEST, "Invalid cursor", "global-e-03");
+            }
+            cursorId = parts[1];
+        }
+        LocalDateTime from = filter.getFrom() == null ? null : filter.getFrom().atStartOfDay();
+        LocalDateTime to = filter.getTo() == null ? null : filter.getTo().plusDays(1).atStartOfDay();
+
+        List<String> ids = orderRepository.findHistoryPageIds(accountId, farmerId, filter.getStatus(), from, to,
+                cursorCreatedAt, cursorId, PageRequest.of(0, size + 1));
+        boolean hasNext = ids.size() > size;
+        if (hasNext) {
+            ids = ids.subList(0, size);
+        }
+        List<Order> orders = new ArrayList<>();
+        if (!ids.isEmpty()) {
+            Map<String, Order> ordersById = orderRepository.findAllWithDetailsByIdIn(ids).stream()
+                    .collect(Collectors.toMap(Order::getId, Function.identity()));
+            for (String id : ids) {
+                orders.add(ordersById.get(id));
+            }
+        }
+        String nextCursor = null;
+        if (hasNext) {
+            Order last = orders.get(orders.size() - 1);
+            nextCursor = CursorUtil.encode(last.getCreatedAt().toString(), last.getId());
+        }
+        return PageResponse.<OrderResponse>builder()
+                .content(orderMapper.toOrderResponseList(orders))
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+
     public OrderResponse getById(String id) {
         Order order = orderRepository.findById(id).orElseThrow(
                 () -> new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01"));
@@ -122,99 +301,145 @@ public class OrderService {
 
     @Transactional
     public OrderResponse consumerChangeStatus(ChangeOrderStatusRequest request) {
-        Order order = orderRepository.findById(request.getOrderId()).orElseThrow(
+        // Khoá đơn: hai lượt huỷ đồng thời (người mua, farmer, bulk, lượt quét giữ hàng) không cùng qua validate
+        Order order = orderRepository.findByIdForUpdate(request.getOrderId()).orElseThrow(
                 () -> new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01"));
-        Set<OrderStatus> statuses = Set.of(
-                OrderStatus.CANCELED,
-                OrderStatus.RECEIVED);
         OrderStatus status = request.getStatus();
-        if (!statuses.contains(status)) {
-            throw new AppException(HttpStatus.FORBIDDEN, "You don't have permission to edit order to this status.",
-                    "order-e-02");
-        }
-        // Không cho phép hủy đơn nếu đã RECEIVED
-        if (status.equals(OrderStatus.CANCELED) && order.getStatus().equals(OrderStatus.RECEIVED)) {
-            throw new AppException(HttpStatus.FORBIDDEN, "Cannot cancel an order that has been received.",
-                    "order-e-05");
-        }
-        // Không cho phép nhận hàng nếu đơn chưa ở trạng thái DELIVERED
-        if (status.equals(OrderStatus.RECEIVED) && !order.getStatus().equals(OrderStatus.DELIVERED)) {
-            throw new AppException(HttpStatus.FORBIDDEN, "Order must be in DELIVERED status to receive.",
-                    "order-e-06");
-        }
+        OrderStateMachine.validate(OrderStateMachine.Actor.CONSUMER, order.getStatus(), status);
+        farmerAnalyticsService.record(Map.of(order.getId(), order.getStatus()), status);
         if (status.equals(OrderStatus.RECEIVED)) {
+            // Cộng dồn vào buffer, ghi xuống DB theo lô (sold = sold + ?) thay vì save từng product.
+            // Chỉ cộng sau khi commit: buffer không rollback theo transaction
+            Map<String, Integer> soldQuantities = new HashMap<>();
             for (OrderItem orderItem : order.getOrderItems()) {
-                Product product = orderItem.getProduct();
-                product.setSold(product.getSold() + orderItem.getQuantity());
-                productRepository.save(product);
+                soldQuantities.merge(orderItem.getProduct().getId(), orderItem.getQuantity(), Integer::sum);
             }
+            TransactionUtil.afterCommit(() -> soldQuantities.forEach(productCounterBuffer::addSold));
         } else if (status.equals(OrderStatus.CANCELED)) {
-            for (OrderItem orderItem : order.getOrderItems()) {
-                Product product = orderItem.getProduct();
-                product.setInventory(product.getInventory() + orderItem.getQuantity());
-                productRepository.save(product);
-            }
-            order.setPaymentStatus(PaymentStatus.CANCELED);
+            restoreInventory(order);
         }
+        applyPaymentStatus(order, status);
+        paymentUrlCache.evict(List.of(order.getId()));
 
         if (request.getReason() != null) {
             order.setLastStatusChangeReason(request.getReason());
         }
+        // Đơn đã rời trạng thái PENDING thì không còn nằm trong lượt quét hết hạn giữ hàng
+        inventoryReservationService.clear(order);
         order.setStatus(status);
         orderRepository.save(order);
+        orderNotificationService.statusChanged(List.of(order.getId()), status, request.getReason(), false);
+        paymentStatusNotifier.publishAfterCommit(List.of(order.getId()), order.getPaymentStatus());
         return orderMapper.toOrderResponse(order);
     }
 
     @Transactional
     public OrderResponse farmerChangeStatus(ChangeOrderStatusRequest request) {
-        Order order = orderRepository.findById(request.getOrderId()).orElseThrow(
+        // Khoá đơn: hai lượt huỷ đồng thời (người mua, farmer, bulk, lượt quét giữ hàng) không cùng qua validate
+        Order order = orderRepository.findByIdForUpdate(request.getOrderId()).orElseThrow(
                 () -> new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01"));
-        Set<OrderStatus> statuses = Set.of(
-                OrderStatus.CONFIRMED,
-                OrderStatus.DELIVERING,
-                OrderStatus.DELIVERED,
-                OrderStatus.CANCELED);
         OrderStatus status = request.getStatus();
-        if (!statuses.contains(status)) {
-            throw new AppException(HttpStatus.FORBIDDEN, "You don't have permission to edit order to this status.",
-                    "order-e-02");
-        }
-        if (status.equals(OrderStatus.CONFIRMED)) {
-            if (!order.getStatus().equals(OrderStatus.PENDING)) {
-                throw new AppException(HttpStatus.FORBIDDEN, "Order must be in PENDING status to confirm.",
-                        "order-e-03");
-            }
-        } else if (status.equals(OrderStatus.DELIVERING)) {
-            if (!order.getStatus().equals(OrderStatus.CONFIRMED)) {
-                throw new AppException(HttpStatus.FORBIDDEN, "Order must be in CONFIRMED status to deliver.",
-                        "order-e-04");
-            }
-
-        } else if (status.equals(OrderStatus.DELIVERED)) {
-            if (!order.getStatus().equals(OrderStatus.DELIVERING)) {
-                throw new AppException(HttpStatus.FORBIDDEN, "Order must be in DELIVERING status to mark as delivered.",
-                        "order-e-05");
-            }
-            order.setPaymentStatus(PaymentStatus.PAID);
-        } else if (status.equals(OrderStatus.CANCELED)) {
-            if (order.getStatus().equals(OrderStatus.RECEIVED)) {
-                throw new AppException(HttpStatus.FORBIDDEN, "Cannot cancel an order that has been received.",
-                        "order-e-06");
-            }
-            order.setPaymentStatus(PaymentStatus.CANCELED);
-        }
+        OrderStateMachine.validate(OrderStateMachine.Actor.FARMER, order.getStatus(), status);
+        farmerAnalyticsService.record(Map.of(order.getId(), order.getStatus()), status);
+        applyPaymentStatus(order, status);
+        paymentUrlCache.evict(List.of(order.getId()));
         if (status.equals(OrderStatus.CANCELED)) {
-            for (OrderItem orderItem : order.getOrderItems()) {
-                Product product = orderItem.getProduct();
-                product.setInventory(product.getInventory() + orderItem.getQuantity());
-                productRepository.save(product);
-            }
+            restoreInventory(order);
         }
         if (request.getReason() != null) {
             order.setLastStatusChangeReason(request.getReason());
         }
+        // Đơn đã rời trạng thái PENDING thì không còn nằm trong lượt quét hết hạn giữ hàng
+        inventoryReservationService.clear(order);
         order.setStatus(status);
         orderRepository.save(order);
+        orderNotificationService.statusChanged(List.of(order.getId()), status, request.getReason(), true);
+        paymentStatusNotifier.publishAfterCommit(List.of(order.getId()), order.getPaymentStatus());
         return orderMapper.toOrderResponse(order);
     }
+
+    /**
+     * Farmer chuyển trạng thái nhiều đơn cùng lúc: kiểm tra tất cả chuyển đổi trước theo bảng trạng thái,
+     * áp dụng cho các đơn hợp lệ bằng 1 câu UPDATE, cộng lại tồn kho gộp theo sản phẩm.
+     * Đơn không hợp lệ không làm hỏng cả lô mà được trả về trong kết quả từng đơn
+     */
+    @Transactional
+    public BulkChangeOrderStatusResponse farmerChangeStatusBulk(BulkChangeOrderStatusRequest request) {
+        String farmerId = securityUtil.getFarmerId();
+        OrderStatus status = request.getStatus();
+        Set<String> orderIds = new LinkedHashSet<>(request.getOrderIds());
+        Map<String, OrderStatusView> currentStatuses = orderRepository.lockStatusByIdIn(orderIds).stream()
+                .collect(Collectors.toMap(OrderStatusView::getId, Function.identity()));
+
+        List<BulkChangeOrderStatusResponse.Result> results = new ArrayList<>(orderIds.size());
+        List<String> accepted = new ArrayList<>();
+        Map<String, OrderStatus> previousStatuses = new HashMap<>();
+        for (String orderId : orderIds) {
+            OrderStatusView current = currentStatuses.get(orderId);
+            try {
+                if (current == null) {
+                    throw new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01");
+                }
+                if (!farmerId.equals(current.getFarmerId())) {
+                    throw new AppException(HttpStatus.FORBIDDEN, "Order does not belong to this farmer", "order-e-09");
+                }
+                OrderStatus previous = OrderStatus.valueOf(current.getStatus());
+                OrderStateMachine.validate(OrderStateMachine.Actor.FARMER, previous, status);
+                accepted.add(orderId);
+                previousStatuses.put(orderId, previous);
+                results.add(new BulkChangeOrderStatusResponse.Result(orderId, true, null, null));
+            } catch (AppException e) {
+                results.add(new BulkChangeOrderStatusResponse.Result(orderId, false, e.getCode(), e.getMessage()));
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            orderRepository.changeStatus(accepted, status, OrderStateMachine.paymentStatusAfter(status),
+                    request.getReason());
+            paymentUrlCache.evict(accepted);
+            // Cộng chênh lệch của cả lô vào bảng thống kê bằng 1 câu đọc và tối đa 2 JDBC batch
+            farmerAnalyticsService.record(previousStatuses, status);
+            orderNotificationService.statusChanged(accepted, status, request.getReason(), true);
+            PaymentStatus paymentStatus = OrderStateMachine.paymentStatusAfter(status);
+            if (paymentStatus != null) {
+                paymentStatusNotifier.publishAfterCommit(accepted, paymentStatus);
+            } else {
+                // Trạng thái thanh toán giữ nguyên: đẩy giá trị hiện tại của từng đơn
+                accepted.stream()
+                        .collect(Collectors.groupingBy(
+                                orderId -> PaymentStatus.valueOf(currentStatuses.get(orderId).getPaymentStatus())))
+                        .forEach((current, ids) -> paymentStatusNotifier.publishAfterCommit(ids, current));
+            }
+            if (status.equals(OrderStatus.CANCELED)) {
+                Map<String, Integer> quantities = new HashMap<>();
+                for (OrderItemQuantityView item : orderRepository.findItemQuantitiesByOrderIdIn(accepted)) {
+                    quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+                }
+                productInventoryRepository.increment(quantities);
+                quantities.keySet().forEach(productCacheUtil::evict);
+            }
+        }
+        return BulkChangeOrderStatusResponse.builder()
+                .succeeded(accepted.size())
+                .failed(results.size() - accepted.size())
+                .results(results)
+                .build();
+    }
+
+    private void applyPaymentStatus(Order order, OrderStatus status) {
+        PaymentStatus paymentStatus = OrderStateMachine.paymentStatusAfter(status);
+        if (paymentStatus != null) {
+            order.setPaymentStatus(paymentStatus);
+        }
+    }
+
+    // Cộng lại tồn kho bằng UPDATE nguyên tử để không ghi đè lượt trừ kho đồng thời
+    private void restoreInventory(Order order) {
+        Map<String, Integer> quantities = new HashMap<>();
+        for (OrderItem orderItem : order.getOrderItems()) {
+            quantities.merge(orderItem.getProduct().getId(), orderItem.getQuantity(), Integer::sum);
+        }
+        productInventoryRepository.increment(quantities);
+        quantities.keySet().forEach(productCacheUtil::evict);
+    }
 }
@@ -0,0 +1,219 @@
+package javaweb.my_project.service;
+
+import jakarta.annotation.PreDestroy;
+import javaweb.my_project.dto.outbox.OutboxStatsResponse;
+import javaweb.my_project.entities.OutboxEvent;
+import javaweb.my_project.enums.OutboxEventType;
+import javaweb.my_project.enums.OutboxStatus;
+import javaweb.my_project.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the outbox in batches: claims due events with SKIP LOCKED and a lease, delivers them
+ * in parallel outside any transaction, then marks them sent or schedules a retry with exponential
+ * backoff. An event whose lease expires (instance stopped mid-delivery) is picked up again,
+ * so delivery is at-least-once.
+ */
+@Slf4j
+@Service
+public class OutboxDispatcher {
+    private static final int PURGE_BATCH_SIZE = 1000;
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final Map<OutboxEventType, OutboxHandler> handlers;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Duration retention;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private volatile long lastDeliveryLagMs;
+    private volatile int lastBatchSize;
+    private volatile LocalDateTime lastDispatchAt;
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            List<OutboxHandler> handlers,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${app.outbox.batch-size:50}") int batchSize,
+                            @Value("${app.outbox.concurrency:4}") int concurrency,
+                            @Value("${app.outbox.max-attempts:8}") int maxAttempts,
+                            @Value("${app.outbox.lease-seconds:120}") long leaseSeconds,
+                            @Value("${app.outbox.base-backoff-seconds:5}") long baseBackoffSeconds,
+                            @Value("${app.outbox.max-backoff-seconds:3600}") long maxBackoffSeconds,
+                            @Value("${app.outbox.retention-days:7}") long retentionDays) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.handlers = handlers.stream().collect(Collectors.toMap(OutboxHandler::getType, Function.identity()));
+        this.transactionTemplate = transactionTemplate;
+        this.executor = Executors.newFixedThreadPool(concurrency,
+                Thread.ofPlatform().name("outbox-", 0).daemon().factory());
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.baseBackoff = Duration.ofSeconds(baseBackoffSeconds);
+        this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+        this.retention = Duration.ofDays(retentionDays);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        int claimed;
+        do {
+            claimed = dispatchBatch();
+        } while (claimed == batchSize);
+    }
+
+    int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = transactionTemplate.execute(status -> {
+            List<String> ids = outboxEventRepository.lockDueIds(now, batchSize);
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            outboxEventRepository.claim(ids, now.plus(lease));
+            return outboxEventRepository.findAllById(ids);
+        });
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+
+        // Gửi song song ngoài transaction, không giữ connection trong lúc chờ SMTP/webhook
+        List<CompletableFuture<Void>> futures = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            futures.add(CompletableFuture.runAsync(() -> deliver(event), executor));
+        }
+        List<String> sent = new ArrayList<>();
+        Map<OutboxEvent, String> failed = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            try {
+                futures.get(i).join();
+                sent.add(events.get(i).getId());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                failed.put(events.get(i), String.valueOf(cause));
+            }
+        }
+
+        LocalDateTime completedAt = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!sent.isEmpty()) {
+                outboxEventRepository.markSent(sent, completedAt);
+            }
+            failed.forEach((event, error) -> fail(event, error, completedAt));
+        });
+
+        delivered.addAndGet(sent.size());
+        lastDeliveryLagMs = (long) events.stream()
+                .mapToLong(event -> Duration.between(event.getCreatedAt(), completedAt).toMillis())
+                .average()
+                .orElse(0);
+        lastBatchSize = events.size();
+        lastDispatchAt = completedAt;
+        return events.size();
+    }
+
+    private void deliver(OutboxEvent event) {
+        OutboxHandler handler = handlers.get(event.getType());
+        if (handler == null) {
+            throw new IllegalStateException("No outbox handler for " + event.getType());
+        }
+        try {
+            handler.handle(event);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // attempts đã được tăng khi claim
+    private void fail(OutboxEvent event, String error, LocalDateTime now) {
+        String message = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        if (event.getAttempts() >= maxAttempts) {
+            outboxEventRepository.markFailed(event.getId(), OutboxStatus.FAILED, now, message);
+            deadLettered.incrementAndGet();
+            log.warn("Outbox event {} ({}) failed after {} attempts: {}", event.getId(), event.getType(),
+                    event.getAttempts(), message);
+            return;
+        }
+        outboxEventRepository.markFailed(event.getId(), OutboxStatus.PENDING, now.plus(backoff(event.getAttempts())),
+                message);
+        retries.incrementAndGet();
+    }
+
+    // base * 2^(attempts - 1), tối đa maxBackoff, cộng thêm tới 20% ngẫu nhiên để các lần retry không dồn cùng lúc
+    private Duration backoff(int attempts) {
+        long seconds = baseBackoff.getSeconds() << Math.min(attempts - 1, 20);
+        seconds = Math.min(seconds, maxBackoff.getSeconds());
+        long jitterMs = ThreadLocalRandom.current().nextLong(seconds * 200 + 1);
+        return Duration.ofSeconds(seconds).plusMillis(jitterMs);
+    }
+
+    /**
+     * Move dead-lettered events back to the queue, returns the number of events requeued
+     */
+    public int requeueFailed() {
+        Integer count = transactionTemplate.execute(
+                status -> outboxEventRepository.requeueFailed(LocalDateTime.now()));
+        return count == null ? 0 : count;
+    }
+
+    public OutboxStatsResponse getStats() {
+        Optional<LocalDateTime> oldestPendingAt = outboxEventRepository.findOldestPendingCreatedAt();
+        return OutboxStatsResponse.builder()
+                .backlog(outboxEventRepository.countByStatus(OutboxStatus.PENDING))
+                .failed(outboxEventRepository.countByStatus(OutboxStatus.FAILED))
+                .oldestPendingAt(oldestPendingAt.orElse(null))
+                .lagSeconds(oldestPendingAt
+                        .map(createdAt -> Duration.between(createdAt, LocalDateTime.now()).toSeconds())
+                        .orElse(0L))
+                .delivered(delivered.get())
+                .retries(retries.get())
+                .deadLettered(deadLettered.get())
+                .lastDeliveryLagMs(lastDeliveryLagMs)
+                .lastBatchSize(lastBatchSize)
+                .lastDispatchAt(lastDispatchAt)
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.purge-interval-ms:3600000}")
+    public void purgeSent() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        int deleted;
+        do {
+            Integer count = transactionTemplate.execute(
+                    status -> outboxEventRepository.deleteSentBefore(before, PURGE_BATCH_SIZE));
+            deleted = count == null ? 0 : count;
+        } while (deleted == PURGE_BATCH_SIZE);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        // Sự kiện chưa gửi xong sẽ được gửi lại khi lease hết hạn
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
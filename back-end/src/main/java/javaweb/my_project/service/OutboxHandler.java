@@ -0,0 +1,14 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.entities.OutboxEvent;
+import javaweb.my_project.enums.OutboxEventType;
+
+/**
+ * Delivers one kind of outbox event. Delivery is at-least-once, so handlers may see
+ * the same event again after a crash or a lease timeout; throwing schedules a retry.
+ */
+public interface OutboxHandler {
+    OutboxEventType getType();
+
+    void handle(OutboxEvent event) throws Exception;
+}
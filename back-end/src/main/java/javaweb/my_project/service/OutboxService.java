@@ -0,0 +1,37 @@
+package javaweb.my_project.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javaweb.my_project.entities.OutboxEvent;
+import javaweb.my_project.enums.OutboxEventType;
+import javaweb.my_project.exception.AppException;
+import javaweb.my_project.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Record a side effect in the caller's transaction; it is only dispatched if that transaction commits
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(OutboxEventType type, String aggregateId, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new AppException("Cannot serialize outbox payload: " + e.getMessage());
+        }
+        outboxEventRepository.save(OutboxEvent.builder()
+                .type(type)
+                .aggregateId(aggregateId)
+                .payload(json)
+                .build());
+    }
+}
@@ -0,0 +1,199 @@
+package javaweb.my_project.service;
+
+import jakarta.annotation.PreDestroy;
+import javaweb.my_project.dto.payment.PendingPaymentView;
+import javaweb.my_project.dto.payment.VNPayQueryResult;
+import javaweb.my_project.enums.PaymentStatus;
+import javaweb.my_project.repository.OrderRepository;
+import javaweb.my_project.util.PaymentUrlCache;
+import javaweb.my_project.util.RateLimiter;
+import javaweb.my_project.util.VNPayUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Catches VNPAY payments whose IPN never arrived: scans PENDING VNPAY orders whose payment link
+ * has expired, in keyset-paged chunks, and asks VNPAY (querydr) for the outcome of each vnp_TxnRef.
+ * Lookups run on a small dedicated pool behind a rate limit, never on request threads.
+ * Paid references go through the same settlement as the IPN; references with no payment are
+ * failed with one conditional update per chunk; anything else is left for the next run.
+ */
+@Slf4j
+@Service
+public class PaymentReconciliationService {
+    private final OrderRepository orderRepository;
+    private final PaymentService paymentService;
+    private final VNPayQueryClient vnPayQueryClient;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentUrlCache paymentUrlCache;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final ExecutorService executor;
+    private final RateLimiter rateLimiter;
+    private final int chunkSize;
+    private final Duration grace;
+    private final Duration maxAge;
+
+    // Lượt chạy theo lịch và lượt gọi tay không chồng lên nhau
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private static final class Tally {
+        int paid;
+        int failed;
+        int unresolved;
+    }
+
+    public PaymentReconciliationService(OrderRepository orderRepository,
+                                        PaymentService paymentService,
+                                        VNPayQueryClient vnPayQueryClient,
+                                        TransactionTemplate transactionTemplate,
+                                        PaymentUrlCache paymentUrlCache,
+                                        PaymentStatusNotifier paymentStatusNotifier,
+                                        @Value("${app.reconciliation.chunk-size:200}") int chunkSize,
+                                        @Value("${app.reconciliation.concurrency:4}") int concurrency,
+                                        @Value("${app.reconciliation.requests-per-second:5}") double requestsPerSecond,
+                                        @Value("${app.reconciliation.grace-minutes:20}") long graceMinutes,
+                                        @Value("${app.reconciliation.max-age-days:30}") long maxAgeDays) {
+        this.orderRepository = orderRepository;
+        this.paymentService = paymentService;
+        this.vnPayQueryClient = vnPayQueryClient;
+        this.transactionTemplate = transactionTemplate;
+        this.paymentUrlCache = paymentUrlCache;
+        this.paymentStatusNotifier = paymentStatusNotifier;
+        this.executor = Executors.newFixedThreadPool(concurrency,
+                Thread.ofPlatform().name("reconcile-", 0).daemon().factory());
+        this.rateLimiter = new RateLimiter(requestsPerSecond);
+        this.chunkSize = chunkSize;
+        this.grace = Duration.ofMinutes(graceMinutes);
+        this.maxAge = Duration.ofDays(maxAgeDays);
+    }
+
+    @Scheduled(fixedDelayString = "${app.reconciliation.interval-ms:300000}",
+            initialDelayString = "${app.reconciliation.initial-delay-ms:60000}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * One pass over the pending VNPAY payments. Returns the number of references queried,
+     * or -1 when another pass is still running.
+     */
+    public int reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        try {
+            // paymentRequestedAt lưu theo giờ VNPAY
+            LocalDateTime now = LocalDateTime.now(VNPayUtil.ZONE);
+            // Chỉ tra link đã hết hạn: người mua không còn thanh toán được nữa
+            LocalDateTime requestedBefore = now.minus(grace);
+            LocalDateTime requestedFrom = now.minus(maxAge);
+            LocalDateTime cursorRequestedAt = null;
+            String cursorId = null;
+            // Một vnp_TxnRef nhóm nhiều đơn có thể nằm vắt qua hai chunk
+            Set<String> seen = new HashSet<>();
+            Tally tally = new Tally();
+            List<PendingPaymentView> chunk;
+            do {
+                chunk = orderRepository.findPendingVnpayPayments(requestedFrom, requestedBefore,
+                        cursorRequestedAt, cursorId, PageRequest.of(0, chunkSize));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                Map<String, LocalDateTime> txnRefs = new LinkedHashMap<>();
+                for (PendingPaymentView view : chunk) {
+                    String txnRef = view.getPaymentReference() != null ? view.getPaymentReference() : view.getId();
+                    if (seen.add(txnRef)) {
+                        txnRefs.put(txnRef, view.getPaymentRequestedAt());
+                    }
+                }
+                reconcileChunk(txnRefs, tally);
+                PendingPaymentView last = chunk.get(chunk.size() - 1);
+                cursorRequestedAt = last.getPaymentRequestedAt();
+                cursorId = last.getId();
+            } while (chunk.size() == chunkSize);
+            if (!seen.isEmpty()) {
+                log.info("Reconciled {} VNPAY references: {} paid, {} failed, {} unresolved",
+                        seen.size(), tally.paid, tally.failed, tally.unresolved);
+            }
+            return seen.size();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void reconcileChunk(Map<String, LocalDateTime> txnRefs, Tally tally) {
+        List<String> refs = new ArrayList<>(txnRefs.keySet());
+        List<CompletableFuture<VNPayQueryResult>> futures = new ArrayList<>(refs.size());
+        for (String txnRef : refs) {
+            futures.add(CompletableFuture.supplyAsync(() -> query(txnRef, txnRefs.get(txnRef)), executor));
+        }
+
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < refs.size(); i++) {
+            VNPayQueryResult result;
+            try {
+                result = futures.get(i).join();
+            } catch (CompletionException e) {
+                log.warn("querydr for {} failed: {}", refs.get(i), String.valueOf(e.getCause()));
+                tally.unresolved++;
+                continue;
+            }
+            if (result.isSuccess() && result.getAmount() != null) {
+                Map<String, String> outcome = paymentService.settle(result.getTxnRef(), result.getAmount(),
+                        result.getResponseCode(), result.getTransactionStatus(), result.getTransactionNo(),
+                        result.getBankCode(), null);
+                if ("04".equals(outcome.get("RspCode"))) {
+                    log.warn("VNPAY reports {} paid with a different amount ({})", result.getTxnRef(),
+                            result.getAmount());
+                    tally.unresolved++;
+                } else {
+                    tally.paid++;
+                }
+            } else if (result.isFailed()) {
+                failed.add(result.getTxnRef());
+            } else {
+                // Đang xử lý, hoàn tiền, nghi gian lận...: để lượt sau hoặc xử lý tay
+                tally.unresolved++;
+            }
+        }
+        if (!failed.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<String> orderIds = orderRepository.lockPendingPaymentIdsByTxnRefIn(failed);
+                if (!orderIds.isEmpty()) {
+                    orderRepository.changePaymentStatusIf(orderIds, PaymentStatus.PENDING, PaymentStatus.FAILED);
+                    paymentUrlCache.evict(orderIds);
+                    paymentStatusNotifier.publishAfterCommit(orderIds, PaymentStatus.FAILED);
+                }
+            });
+            tally.failed += failed.size();
+        }
+    }
+
+    private VNPayQueryResult query(String txnRef, LocalDateTime transactionDate) {
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the querydr rate limit", e);
+        }
+        return vnPayQueryClient.query(txnRef, transactionDate);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -6,43 +6,94 @@ import javaweb.my_project.dto.payment.PaymentCreationResponse;
 import javaweb.my_project.dto.order.OrderResponse;
 import javaweb.my_project.entities.Order;
 import javaweb.my_project.entities.Payment;
+import javaweb.my_project.enums.OrderStatus;
 import javaweb.my_project.enums.PaymentStatus;
 import javaweb.my_project.exception.AppException;
 import javaweb.my_project.mapper.OrderMapper;
 import javaweb.my_project.repository.OrderRepository;
 import javaweb.my_project.repository.PaymentRepository;
+import javaweb.my_project.security.SecurityUtil;
+import javaweb.my_project.util.PaymentUrlCache;
+import javaweb.my_project.util.TransactionUtil;
 import javaweb.my_project.util.VNPayUtil;
+import javaweb.my_project.util.jwt.PaymentStreamTokenUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 public class PaymentService {
+    private static final int MAX_PROCESSED_TRANSACTIONS = 10000;
+    private static final int URL_TTL_MINUTES = 15;
 
     private final VNPayConfig vnPayConfig;
     private final PaymentRepository paymentRepository;
     private final OrderRepository orderRepository;
     private final OrderMapper orderMapper;
     private final VNPayUtil vnPayUtil;
+    private final InventoryReservationService inventoryReservationService;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final PaymentUrlCache paymentUrlCache;
+    private final SecurityUtil securityUtil;
+    private final PaymentStreamTokenUtil paymentStreamTokenUtil;
 
+    // vnp_TxnRef:vnp_TransactionNo đã xác nhận gần đây -> hạn (ms).
+    // LRU có giới hạn, chỉ là lớp chặn nhanh trước khi khoá đơn; DB vẫn là nơi quyết định
+    private final Map<String, Long> processedTransactions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_PROCESSED_TRANSACTIONS;
+        }
+    };
+
+    @Value("${app.payment.ipn-dedupe-ttl-seconds:600}")
+    private long processedTtlSeconds;
+
+    // Link cache còn hạn ít hơn mức này thì tạo link mới, tránh người mua vào trang VNPAY khi link sắp hết hạn
+    @Value("${app.payment.url-min-remaining-seconds:120}")
+    private long urlMinRemainingSeconds;
+
+    /**
+     * Signed VNPAY URL for the order (or checkout group). A reload while the previous URL is still
+     * valid gets the same URL back without touching the database.
+     */
+    @Transactional
     public PaymentCreationResponse createPaymentUrl(String orderId, HttpServletRequest request) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01"));
+        LocalDateTime now = LocalDateTime.now(VNPayUtil.ZONE);
+        String cachedUrl = paymentUrlCache.get(orderId, now.plusSeconds(urlMinRemainingSeconds));
+        if (cachedUrl != null) {
+            return paymentCreationResponse(cachedUrl);
+        }
+        long generation = paymentUrlCache.generation();
+
+        List<Order> found = findOrdersByTxnRef(orderId, false);
+        if (found.isEmpty()) {
+            throw new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01");
+        }
+        // Đơn trong nhóm đã huỷ hoặc đã thanh toán không được tính vào số tiền
+        List<Order> orders = found.stream()
+                .filter(order -> order.getStatus() == OrderStatus.PENDING
+                        && order.getPaymentStatus() != PaymentStatus.PAID)
+                .toList();
+        if (orders.isEmpty()) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Order is not awaiting payment", "payment-e-04");
+        }
         String vnp_Version = vnPayConfig.getVersion();
         String vnp_Command = vnPayConfig.getCommand();
         String orderType = vnPayConfig.getOrderType();
         String vnp_TmnCode = vnPayConfig.getTmnCode();
 
-        Map<String, String> vnp_Params = new HashMap<>();
+        // TreeMap: tham số đã theo thứ tự tên, query chuẩn được dựng 1 lần, vừa để ký vừa để gửi
+        TreeMap<String, String> vnp_Params = new TreeMap<>();
         vnp_Params.put("vnp_Version", vnp_Version);
         vnp_Params.put("vnp_Command", vnp_Command);
         vnp_Params.put("vnp_TmnCode", vnp_TmnCode);
-        vnp_Params.put("vnp_Amount", String.valueOf(order.getTotalPrice() * 100));
+        vnp_Params.put("vnp_Amount", String.valueOf(totalPrice(orders) * 100));
         vnp_Params.put("vnp_CurrCode", "VND");
         vnp_Params.put("vnp_TxnRef", orderId);
         vnp_Params.put("vnp_OrderInfo", "Thanh toan don hang");
@@ -51,156 +102,254 @@ public class PaymentService {
         vnp_Params.put("vnp_ReturnUrl", vnPayConfig.getReturnUrl());
         vnp_Params.put("vnp_IpAddr", VNPayUtil.getIpAddress(request));
 
-        Calendar cld = Calendar.getInstance(TimeZone.getTimeZone("Etc/GMT+7"));
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
-        String vnp_CreateDate = formatter.format(cld.getTime());
-        vnp_Params.put("vnp_CreateDate", vnp_CreateDate);
-
-        cld.add(Calendar.MINUTE, 15);
-        String vnp_ExpireDate = formatter.format(cld.getTime());
-        vnp_Params.put("vnp_ExpireDate", vnp_ExpireDate);
-
-        List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder hashData = new StringBuilder();
-        StringBuilder query = new StringBuilder();
-        Iterator<String> itr = fieldNames.iterator();
-
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = vnp_Params.get(fieldName);
-            if ((fieldValue != null) && (!fieldValue.isEmpty())) {
-                hashData.append(fieldName);
-                hashData.append('=');
-                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
-                query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII));
-                query.append('=');
-                query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
-                if (itr.hasNext()) {
-                    query.append('&');
-                    hashData.append('&');
-                }
-            }
-        }
+        // Bỏ phần lẻ giây để giá trị lưu lại trùng với chuỗi đã gửi VNPAY
+        LocalDateTime createDate = now.withNano(0);
+        LocalDateTime expireDate = createDate.plusMinutes(URL_TTL_MINUTES);
+        vnp_Params.put("vnp_CreateDate", createDate.format(VNPayUtil.DATE_FORMAT));
+        vnp_Params.put("vnp_ExpireDate", expireDate.format(VNPayUtil.DATE_FORMAT));
+        // querydr cần đúng vnp_CreateDate của link làm vnp_TransactionDate
+        List<String> orderIds = orders.stream().map(Order::getId).toList();
+        orderRepository.markPaymentRequested(orderIds, createDate);
+
+        String query = VNPayUtil.buildQuery(vnp_Params);
+        String paymentUrl = vnPayConfig.getVnpUrl() + "?" + query + "&vnp_SecureHash=" + vnPayUtil.sign(query);
+        TransactionUtil.afterCommit(() -> paymentUrlCache.put(orderId, orderIds, paymentUrl, expireDate, generation));
+        return paymentCreationResponse(paymentUrl);
+    }
 
-        String queryUrl = query.toString();
-        String vnp_SecureHash = VNPayUtil.hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-        queryUrl += "&vnp_SecureHash=" + vnp_SecureHash;
-        String paymentUrl = vnPayConfig.getVnpUrl() + "?" + queryUrl;
+    private static PaymentCreationResponse paymentCreationResponse(String paymentUrl) {
         PaymentCreationResponse response = new PaymentCreationResponse();
         response.setPaymentUrl(paymentUrl);
-
         return response;
     }
 
+    @Transactional
     public OrderResponse handleReturn(HttpServletRequest request) {
-        Map<String, String> fields = new HashMap<>();
-        for (Enumeration<String> params = request.getParameterNames(); params.hasMoreElements();) {
-            String fieldName = params.nextElement();
-            String fieldValue = request.getParameter(fieldName);
-            if ((fieldValue != null) && (!fieldValue.isEmpty())) {
-                fields.put(fieldName, fieldValue);
-            }
-        }
-
-        String vnp_SecureHash = request.getParameter("vnp_SecureHash");
+        TreeMap<String, String> fields = VNPayUtil.getFields(request);
+        String vnp_SecureHash = fields.remove("vnp_SecureHash");
         fields.remove("vnp_SecureHashType");
-        fields.remove("vnp_SecureHash");
 
         // 1️⃣ Xác thực chữ ký
-        String signValue = VNPayUtil.hmacSHA512(vnPayConfig.getHashSecret(), vnPayUtil.hashAllFields(fields));
-        if (!signValue.equals(vnp_SecureHash)) {
+        if (!vnPayUtil.verify(fields, vnp_SecureHash)) {
             throw new AppException(HttpStatus.FORBIDDEN, "Invalid signature", "payment-e-02");
         }
 
         // 2️⃣ Lấy đơn hàng từ DB
         String orderId = request.getParameter("vnp_TxnRef");
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01"));
+        List<Order> orders = findOrdersByTxnRef(orderId, true);
+        if (orders.isEmpty()) {
+            throw new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01");
+        }
 
         String responseCode = request.getParameter("vnp_ResponseCode");
         String transactionStatus = request.getParameter("vnp_TransactionStatus");
 
+        List<Order> payable = payable(orders);
         if ("00".equals(responseCode) && "00".equals(transactionStatus)) {
             // ✅ Ở môi trường test, cập nhật trực tiếp
-            order.setPaymentStatus(PaymentStatus.PAID);
-            orderRepository.save(order);
+            confirmPaid(payable);
         } else {
-            order.setPaymentStatus(PaymentStatus.FAILED);
-            orderRepository.save(order);
+            // Return đến sau IPN thành công không được lật PAID thành FAILED
+            markFailed(payable);
         }
+        orderRepository.saveAll(orders);
 
         // 4️⃣ Trả về kết quả để frontend hiển thị
-        return orderMapper.toOrderResponse(order);
+        return orderMapper.toOrderResponse(orders.get(0));
     }
 
     // IPN (Instant Payment Notification) handler
+    @Transactional
     public Map<String, String> handleIpn(HttpServletRequest request) {
-        Map<String, String> fields = new HashMap<>();
-        for (Enumeration<String> params = request.getParameterNames(); params.hasMoreElements();) {
-            String fieldName = params.nextElement();
-            String fieldValue = request.getParameter(fieldName);
-            if (fieldValue != null && !fieldValue.isEmpty()) {
-                fields.put(fieldName, fieldValue);
-            }
-        }
-
+        TreeMap<String, String> fields = VNPayUtil.getFields(request);
         String vnp_SecureHash = fields.remove("vnp_SecureHash");
         fields.remove("vnp_SecureHashType");
 
-        String signValue = VNPayUtil.hmacSHA512(vnPayConfig.getHashSecret(), vnPayUtil.hashAllFields(fields));
-
         // 1️⃣ Kiểm tra chữ ký
-        if (!signValue.equals(vnp_SecureHash)) {
+        if (!vnPayUtil.verify(fields, vnp_SecureHash)) {
             return Map.of("RspCode", "97", "Message", "Invalid signature");
         }
 
         String orderId = fields.get("vnp_TxnRef");
-        Order order = orderRepository.findById(orderId).orElse(null);
+        String transactionNo = fields.get("vnp_TransactionNo");
+        // VNPAY gửi lại IPN: giao dịch vừa xác nhận xong thì trả lời ngay, không khoá đơn
+        if (isProcessed(orderId, transactionNo)) {
+            return Map.of("RspCode", "02", "Message", "Order already confirmed");
+        }
+        return settle(orderId, Long.parseLong(fields.get("vnp_Amount")), fields.get("vnp_ResponseCode"),
+                fields.get("vnp_TransactionStatus"), transactionNo, fields.get("vnp_BankCode"),
+                fields.get("vnp_CardType"));
+    }
+
+    /**
+     * Apply a VNPAY result (from the IPN or a querydr lookup) to the orders of txnRef under row locks.
+     * Amount is as sent by VNPAY (x100). Returns the IPN answer: 00 applied, 01 order not found,
+     * 02 already confirmed, 04 amount mismatch.
+     */
+    @Transactional
+    public Map<String, String> settle(String txnRef, long amount, String responseCode, String transactionStatus,
+                                      String transactionNo, String bankCode, String cardType) {
+        // Khoá đơn để không chạy song song với lượt quét giải phóng giữ hàng và IPN trùng
+        List<Order> orders = findOrdersByTxnRef(txnRef, true);
 
         // 2️⃣ Kiểm tra tồn tại đơn hàng
-        if (order == null) {
+        if (orders.isEmpty()) {
             return Map.of("RspCode", "01", "Message", "Order not found");
         }
 
-        // 3️⃣ Kiểm tra số tiền khớp
-        long amount = Long.parseLong(fields.get("vnp_Amount")) / 100; // VNPAY nhân 100 lần
-        if (amount != order.getTotalPrice()) {
+        // 3️⃣ Kiểm tra số tiền khớp, chỉ trên các đơn còn thu tiền được
+        orders = payable(orders);
+        if (amount / 100 != totalPrice(orders)) { // VNPAY nhân 100 lần
             return Map.of("RspCode", "04", "Message", "Invalid amount");
         }
 
-        String responseCode = fields.get("vnp_ResponseCode");
-        String transactionStatus = fields.get("vnp_TransactionStatus");
-
         // 4️⃣ Nếu đã xác nhận thanh toán trước đó
-        if (order.getPaymentStatus() == PaymentStatus.PAID) {
+        if (orders.stream().anyMatch(order -> order.getPaymentStatus() == PaymentStatus.PAID)) {
             return Map.of("RspCode", "02", "Message", "Order already confirmed");
         }
 
         // 5️⃣ Xác nhận thanh toán
         if ("00".equals(responseCode) && "00".equals(transactionStatus)) {
-            order.setPaymentStatus(PaymentStatus.PAID);
-            Payment payment = Payment.builder()
-                    .transactionId(fields.get("vnp_TransactionNo"))
-                    .vnpTxnRef(orderId)
-                    .vnpResponseCode(responseCode)
-                    .bankCode(fields.get("vnp_BankCode"))
-                    .cardType(fields.get("vnp_CardType"))
-                    .order(order)
-                    .build();
-            paymentRepository.save(payment);
-            orderRepository.save(order);
+            if (!confirmPaid(orders)) {
+                return Map.of("RspCode", "02", "Message", "Order already confirmed");
+            }
+            List<Payment> payments = new ArrayList<>();
+            for (Order order : orders) {
+                payments.add(Payment.builder()
+                        .transactionId(transactionNo)
+                        .vnpTxnRef(txnRef)
+                        .vnpResponseCode(responseCode)
+                        .bankCode(bankCode)
+                        .cardType(cardType)
+                        .order(order)
+                        .build());
+            }
+            // Unique (transaction_id, order_id) là chốt chặn cuối nếu hai IPN vẫn lọt qua cùng lúc
+            paymentRepository.saveAll(payments);
+            orderRepository.saveAll(orders);
+            TransactionUtil.afterCommit(() -> markProcessed(txnRef, transactionNo));
             return Map.of("RspCode", "00", "Message", "Confirm Success");
         } else {
-            order.setPaymentStatus(PaymentStatus.FAILED);
-            orderRepository.save(order);
+            markFailed(orders);
+            orderRepository.saveAll(orders);
             return Map.of("RspCode", "00", "Message", "Payment failed");
         }
     }
 
-    public String getPaymentStatus(String orderId) {
-        Order order = orderRepository.findById(orderId)
+    /**
+     * Conditional PAID update on the locked orders; returns false when every order was already paid.
+     * The managed entities are updated the same way so the flush does not write a stale status back.
+     */
+    private boolean confirmPaid(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return false;
+        }
+        List<String> ids = orders.stream().map(Order::getId).toList();
+        if (orderRepository.changePaymentStatusUnless(ids, PaymentStatus.PAID) == 0) {
+            return false;
+        }
+        paymentUrlCache.evict(ids);
+        for (Order order : orders) {
+            if (order.getPaymentStatus() != PaymentStatus.PAID) {
+                order.setPaymentStatus(PaymentStatus.PAID);
+                inventoryReservationService.commit(order);
+            }
+        }
+        paymentStatusNotifier.publishAfterCommit(ids, PaymentStatus.PAID);
+        return true;
+    }
+
+    // Chỉ đơn đang chờ thanh toán mới chuyển FAILED
+    private void markFailed(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        List<String> ids = orders.stream().map(Order::getId).toList();
+        if (orderRepository.changePaymentStatusIf(ids, PaymentStatus.PENDING, PaymentStatus.FAILED) == 0) {
+            return;
+        }
+        paymentUrlCache.evict(ids);
+        List<String> changed = new ArrayList<>();
+        for (Order order : orders) {
+            if (order.getPaymentStatus() == PaymentStatus.PENDING) {
+                order.setPaymentStatus(PaymentStatus.FAILED);
+                changed.add(order.getId());
+            }
+        }
+        paymentStatusNotifier.publishAfterCommit(changed, PaymentStatus.FAILED);
+    }
+
+    private boolean isProcessed(String txnRef, String transactionNo) {
+        if (transactionNo == null) {
+            return false;
+        }
+        String key = txnRef + ":" + transactionNo;
+        synchronized (processedTransactions) {
+            Long expiresAt = processedTransactions.get(key);
+            if (expiresAt == null) {
+                return false;
+            }
+            if (expiresAt < System.currentTimeMillis()) {
+                processedTransactions.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private void markProcessed(String txnRef, String transactionNo) {
+        if (transactionNo == null) {
+            return;
+        }
+        synchronized (processedTransactions) {
+            processedTransactions.put(txnRef + ":" + transactionNo,
+                    System.currentTimeMillis() + processedTtlSeconds * 1000);
+        }
+    }
+
+    /**
+     * Short-lived token for the status stream of an order owned by the current user (EventSource cannot send headers)
+     */
+    public String createStatusStreamToken(String orderId) {
+        String accountId = securityUtil.getAccountId();
+        String ownerId = orderRepository.findAccountIdById(orderId)
                 .orElseThrow(() -> new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01"));
-        return order.getPaymentStatus().name();
+        if (!ownerId.equals(accountId)) {
+            throw new AppException(HttpStatus.FORBIDDEN, "Order does not belong to current user", "payment-e-05");
+        }
+        return paymentStreamTokenUtil.generateToken(accountId, orderId);
+    }
+
+    public String getPaymentStatus(String orderId) {
+        // Chỉ đọc một cột, không load cả đơn
+        return orderRepository.findPaymentStatusById(orderId)
+                .orElseThrow(() -> new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01"))
+                .name();
+    }
+
+    // vnp_TxnRef là id đơn, hoặc paymentReference dùng chung khi một lần checkout tạo nhiều đơn
+    private List<Order> findOrdersByTxnRef(String txnRef, boolean lock) {
+        List<Order> orders = lock
+                ? orderRepository.findAllByPaymentReferenceForUpdate(txnRef)
+                : orderRepository.findAllByPaymentReference(txnRef);
+        if (!orders.isEmpty()) {
+            return orders;
+        }
+        Optional<Order> order = lock ? orderRepository.findByIdForUpdate(txnRef) : orderRepository.findById(txnRef);
+        return order.map(List::of).orElse(List.of());
+    }
+
+    // Đơn còn thu tiền được: đang chờ xử lý, hoặc bị huỷ chỉ vì hết hạn giữ hàng (thanh toán muộn sẽ khôi phục).
+    // Đơn người mua/farmer đã huỷ không bao giờ bị đánh dấu PAID
+    private static List<Order> payable(List<Order> orders) {
+        return orders.stream()
+                .filter(order -> order.getStatus() == OrderStatus.PENDING
+                        || (order.getStatus() == OrderStatus.CANCELED
+                        && InventoryReservationService.EXPIRED_REASON.equals(order.getLastStatusChangeReason())))
+                .toList();
+    }
+
+    private long totalPrice(List<Order> orders) {
+        return orders.stream().mapToLong(Order::getTotalPrice).sum();
     }
 }
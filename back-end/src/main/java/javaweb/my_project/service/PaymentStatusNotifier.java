@@ -0,0 +1,149 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.enums.PaymentStatus;
+import javaweb.my_project.exception.AppException;
+import javaweb.my_project.util.TransactionUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes payment status changes to clients waiting on an SSE stream.
+ * <p>
+ * Each waiter is an async SseEmitter kept in a map by order id, so an idle connection holds
+ * no servlet thread. The payment flows publish after their transaction commits; the current
+ * status is sent on subscribe, and the stream ends once the payment is no longer PENDING.
+ */
+@Slf4j
+@Service
+public class PaymentStatusNotifier {
+    public static final String EVENT_NAME = "payment-status";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long timeoutMs;
+    private final int maxSubscribers;
+
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    public PaymentStatusNotifier(JdbcTemplate jdbcTemplate,
+                                 @Value("${app.payment.sse-timeout-ms:120000}") long timeoutMs,
+                                 @Value("${app.payment.sse-max-subscribers:10000}") int maxSubscribers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timeoutMs = timeoutMs;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * Stream of the payment status of one order: the current value first, then each change
+     */
+    public SseEmitter subscribe(String orderId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new AppException(HttpStatus.SERVICE_UNAVAILABLE, "Too many payment status subscribers",
+                    "payment-e-03");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        // Đăng ký trước khi đọc trạng thái: thay đổi commit xen giữa vẫn được đẩy tới
+        subscribers.compute(orderId, (key, emitters) -> {
+            Set<SseEmitter> result = emitters == null ? ConcurrentHashMap.newKeySet() : emitters;
+            result.add(emitter);
+            return result;
+        });
+        emitter.onCompletion(() -> remove(orderId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> remove(orderId, emitter));
+
+        PaymentStatus status = findPaymentStatus(orderId);
+        if (status == null) {
+            remove(orderId, emitter);
+            throw new AppException(HttpStatus.NOT_FOUND, "Order not found", "order-e-01");
+        }
+        send(orderId, emitter, status);
+        return emitter;
+    }
+
+    // JdbcTemplate ngoài transaction trả connection ngay; qua EntityManager của open-in-view thì
+    // request async giữ connection tới khi stream kết thúc
+    private PaymentStatus findPaymentStatus(String orderId) {
+        List<String> statuses = jdbcTemplate.queryForList("SELECT payment_status FROM orders WHERE id = ?",
+                String.class, orderId);
+        return statuses.isEmpty() ? null : PaymentStatus.valueOf(statuses.get(0));
+    }
+
+    /**
+     * Push the new status once the current transaction commits (immediately without a transaction)
+     */
+    public void publishAfterCommit(Collection<String> orderIds, PaymentStatus status) {
+        // Không bỏ qua khi chưa có ai chờ: client có thể subscribe trước lúc commit và đọc PENDING
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = List.copyOf(orderIds);
+        TransactionUtil.afterCommit(() -> publish(ids, status));
+    }
+
+    /**
+     * Push the new status to every waiter of these orders; call after the change has committed
+     */
+    public void publish(Collection<String> orderIds, PaymentStatus status) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        for (String orderId : orderIds) {
+            Set<SseEmitter> emitters = subscribers.get(orderId);
+            if (emitters != null) {
+                for (SseEmitter emitter : emitters) {
+                    send(orderId, emitter, status);
+                }
+            }
+        }
+    }
+
+    private void send(String orderId, SseEmitter emitter, PaymentStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(status.name()));
+            if (status != PaymentStatus.PENDING) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client đã đóng kết nối hoặc emitter đã kết thúc
+            remove(orderId, emitter);
+        }
+    }
+
+    // Comment SSE định kỳ để proxy không cắt kết nối rảnh và dọn kết nối đã chết
+    @Scheduled(fixedDelayString = "${app.payment.sse-heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach((orderId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } catch (IOException | IllegalStateException e) {
+                    remove(orderId, emitter);
+                }
+            }
+        });
+    }
+
+    private void remove(String orderId, SseEmitter emitter) {
+        subscribers.computeIfPresent(orderId, (key, emitters) -> {
+            if (emitters.remove(emitter)) {
+                subscriberCount.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package javaweb.my_project.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javaweb.my_project.dto.product.ProductAdminFilter;
+import javaweb.my_project.dto.product.ProductExportRow;
+import javaweb.my_project.repository.ProductRepository;
+import javaweb.my_project.util.CsvWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Streams the admin product export row by row (NDJSON or CSV) from a forward-only
+ * result set, so memory use does not depend on the catalog size.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+    private static final int FLUSH_INTERVAL = 500;
+    private static final List<String> CSV_HEADER = Arrays.asList("id", "name", "category", "farmerId", "farmer",
+            "price", "unitPrice", "inventory", "sold", "rating", "status", "ocopStatus", "createdAt");
+
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void export(ProductAdminFilter filter, String format, OutputStream output) throws IOException {
+        String categoryPath = productService.resolveCategoryPath(filter.getCategoryId());
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        CsvWriter csvWriter = FORMAT_CSV.equals(format) ? new CsvWriter(writer) : null;
+        if (csvWriter != null) {
+            csvWriter.writeRecord(CSV_HEADER);
+        }
+        try (Stream<ProductExportRow> rows = productRepository.streamForExport(filter.getStatus(), categoryPath,
+                filter.getFarmerId(), blankToNull(filter.getKeyword()))) {
+            Iterator<ProductExportRow> iterator = rows.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                ProductExportRow row = iterator.next();
+                if (csvWriter != null) {
+                    csvWriter.writeRecord(Arrays.asList(row.getId(), row.getName(), row.getCategory(),
+                            row.getFarmerId(), row.getFarmer(), row.getPrice(), row.getUnitPrice(),
+                            row.getInventory(), row.getSold(), row.getRating(), row.getStatus(),
+                            row.getOcopStatus(), row.getCreatedAt()));
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                // Đẩy dữ liệu ra client định kỳ để không giữ toàn bộ response trong buffer
+                if (++count % FLUSH_INTERVAL == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
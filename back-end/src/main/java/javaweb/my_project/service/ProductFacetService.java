@@ -0,0 +1,327 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.dto.api.PageResponse;
+import javaweb.my_project.dto.product.ProductFacetRequest;
+import javaweb.my_project.dto.product.ProductFacetResponse;
+import javaweb.my_project.dto.product.ProductTagResponse;
+import javaweb.my_project.entities.Ocop;
+import javaweb.my_project.entities.Product;
+import javaweb.my_project.enums.OcopStatus;
+import javaweb.my_project.enums.ProductStatus;
+import javaweb.my_project.exception.AppException;
+import javaweb.my_project.mapper.ProductMapper;
+import javaweb.my_project.repository.ProductRepository;
+import javaweb.my_project.util.TransactionUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory facet engine over ACTIVE products. Every facet value owns a bitmap
+ * of dense document ids, so filtering is bitmap AND/OR and facet counts are
+ * cardinalities, with no SQL per filter click.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductFacetService {
+    private static final int[] PRICE_BOUNDS = { 20_000, 50_000, 100_000, 200_000, 500_000 };
+    private static final int CATEGORY = 0;
+    private static final int FARMER = 1;
+    private static final int STAR = 2;
+    private static final int OCOP_STATUS = 3;
+    private static final int UNIT_PRICE = 4;
+    private static final int PRICE = 5;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final List<FacetDoc> docs = new ArrayList<>();
+    private final Deque<Integer> freeDocIds = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final Dimension<String> categories = new Dimension<>();
+    private final Dimension<String> farmers = new Dimension<>();
+    private final Dimension<Integer> stars = new Dimension<>();
+    private final Dimension<OcopStatus> ocopStatuses = new Dimension<>();
+    private final Dimension<String> unitPrices = new Dimension<>();
+    private final Dimension<String> priceRanges = new Dimension<>();
+
+    private record FacetDoc(String id, int price, double rating, String categoryId, String farmerId,
+            Integer star, OcopStatus ocopStatus, String unitPrice) {
+    }
+
+    private static class Dimension<K> {
+        final Map<K, BitSet> bitmaps = new HashMap<>();
+
+        void add(K key, int doc) {
+            if (key != null) {
+                bitmaps.computeIfAbsent(key, k -> new BitSet()).set(doc);
+            }
+        }
+
+        void remove(K key, int doc) {
+            if (key == null) {
+                return;
+            }
+            BitSet bitmap = bitmaps.get(key);
+            if (bitmap != null) {
+                bitmap.clear(doc);
+                if (bitmap.isEmpty()) {
+                    bitmaps.remove(key);
+                }
+            }
+        }
+
+        // OR các giá trị được chọn; null = không lọc theo dimension này
+        BitSet select(Collection<K> keys) {
+            if (keys == null || keys.isEmpty()) {
+                return null;
+            }
+            BitSet result = new BitSet();
+            for (K key : keys) {
+                BitSet bitmap = bitmaps.get(key);
+                if (bitmap != null) {
+                    result.or(bitmap);
+                }
+            }
+            return result;
+        }
+
+        Map<String, Long> counts(BitSet base) {
+            Map<String, Long> counts = new TreeMap<>();
+            for (Map.Entry<K, BitSet> entry : bitmaps.entrySet()) {
+                BitSet intersection = (BitSet) base.clone();
+                intersection.and(entry.getValue());
+                long count = intersection.cardinality();
+                if (count > 0) {
+                    counts.put(String.valueOf(entry.getKey()), count);
+                }
+            }
+            return counts;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Product> products = productRepository.findAllWithOcopByStatus(ProductStatus.ACTIVE);
+        lock.writeLock().lock();
+        try {
+            for (String id : new ArrayList<>(docIds.keySet())) {
+                delete(id);
+            }
+            for (Product product : products) {
+                put(toFacetDoc(product));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Refresh (or drop if no longer ACTIVE) a product once the current transaction commits
+     */
+    public void index(Product product) {
+        String id = product.getId();
+        FacetDoc doc = product.getStatus() == ProductStatus.ACTIVE ? toFacetDoc(product) : null;
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                delete(id);
+                if (doc != null) {
+                    put(doc);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void remove(String id) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                delete(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public ProductFacetResponse search(ProductFacetRequest request) {
+        if (request.getPage() < 0 || request.getSize() <= 0) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Invalid page or size", "global-e-04");
+        }
+
+        Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+        List<FacetDoc> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<BitSet> filters = Arrays.asList(
+                    categories.select(request.getCategoryIds()),
+                    farmers.select(request.getFarmerIds()),
+                    stars.select(request.getStars()),
+                    ocopStatuses.select(request.getOcopStatuses()),
+                    unitPrices.select(request.getUnitPrices()),
+                    selectPrice(request.getMinPrice(), request.getMaxPrice()));
+
+            // Mỗi facet đếm trên tập đã lọc bởi các facet khác (disjunctive faceting)
+            facets.put("category", categories.counts(combine(filters, CATEGORY)));
+            facets.put("farmer", farmers.counts(combine(filters, FARMER)));
+            facets.put("star", stars.counts(combine(filters, STAR)));
+            facets.put("ocopStatus", ocopStatuses.counts(combine(filters, OCOP_STATUS)));
+            facets.put("unitPrice", unitPrices.counts(combine(filters, UNIT_PRICE)));
+            facets.put("price", priceRanges.counts(combine(filters, PRICE)));
+
+            BitSet matched = combine(filters, -1);
+            for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                hits.add(docs.get(doc));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        hits.sort(Comparator.comparingDouble(FacetDoc::rating).reversed().thenComparing(FacetDoc::id));
+        int total = hits.size();
+        int size = Math.min(request.getSize(), MAX_PAGE_SIZE);
+        // Tính offset bằng long để page lớn không tràn int thành số âm
+        int from = (int) Math.min((long) request.getPage() * size, total);
+        int to = Math.min(from + size, total);
+        List<String> ids = hits.subList(from, to).stream().map(FacetDoc::id).toList();
+
+        Map<String, Product> productMap = ids.isEmpty() ? Map.of()
+                : productRepository.findAllByIdIn(ids).stream()
+                        .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<ProductTagResponse> content = ids.stream()
+                .map(productMap::get)
+                .filter(Objects::nonNull)
+                .map(productMapper::toProductTagResponse)
+                .toList();
+
+        PageResponse<ProductTagResponse> products = PageResponse.<ProductTagResponse>builder()
+                .content(content)
+                .page(request.getPage())
+                .totalPages((total + size - 1) / size)
+                .totalElements((long) total)
+                .build();
+        return ProductFacetResponse.builder()
+                .products(products)
+                .facets(facets)
+                .build();
+    }
+
+    // Gọi khi đang giữ lock
+    private BitSet combine(List<BitSet> filters, int skip) {
+        BitSet result = (BitSet) live.clone();
+        for (int i = 0; i < filters.size(); i++) {
+            if (i != skip && filters.get(i) != null) {
+                result.and(filters.get(i));
+            }
+        }
+        return result;
+    }
+
+    // Gọi khi đang giữ lock
+    private BitSet selectPrice(Integer minPrice, Integer maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return null;
+        }
+        int min = minPrice == null ? Integer.MIN_VALUE : minPrice;
+        int max = maxPrice == null ? Integer.MAX_VALUE : maxPrice;
+        BitSet result = new BitSet();
+        for (int i = 0; i <= PRICE_BOUNDS.length; i++) {
+            int lower = i == 0 ? Integer.MIN_VALUE : PRICE_BOUNDS[i - 1];
+            int upper = i == PRICE_BOUNDS.length ? Integer.MAX_VALUE : PRICE_BOUNDS[i] - 1;
+            if (upper < min || lower > max) {
+                continue;
+            }
+            BitSet bucket = priceRanges.bitmaps.get(priceRange(i == 0 ? 0 : PRICE_BOUNDS[i - 1]));
+            if (bucket == null) {
+                continue;
+            }
+            if (lower >= min && upper <= max) {
+                // Bucket nằm trọn trong khoảng: lấy nguyên bitmap
+                result.or(bucket);
+                continue;
+            }
+            // Chỉ hai bucket ở biên mới phải xét giá từng sản phẩm
+            for (int doc = bucket.nextSetBit(0); doc >= 0; doc = bucket.nextSetBit(doc + 1)) {
+                int price = docs.get(doc).price();
+                if (price >= min && price <= max) {
+                    result.set(doc);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String priceRange(int price) {
+        int lower = 0;
+        for (int bound : PRICE_BOUNDS) {
+            if (price < bound) {
+                return lower + "-" + bound;
+            }
+            lower = bound;
+        }
+        return lower + "+";
+    }
+
+    private FacetDoc toFacetDoc(Product product) {
+        Ocop ocop = product.getOcop();
+        return new FacetDoc(
+                product.getId(),
+                product.getPrice() == null ? 0 : product.getPrice(),
+                product.getRating() == null ? 0.0 : product.getRating(),
+                product.getCategory() == null ? null : product.getCategory().getId(),
+                product.getFarmer() == null ? null : product.getFarmer().getId(),
+                ocop == null ? null : ocop.getStar(),
+                ocop == null ? OcopStatus.NONE : ocop.getStatus(),
+                product.getUnitPrice());
+    }
+
+    // Gọi khi đang giữ write lock
+    private void put(FacetDoc doc) {
+        int docId = freeDocIds.isEmpty() ? docs.size() : freeDocIds.pop();
+        if (docId == docs.size()) {
+            docs.add(doc);
+        } else {
+            docs.set(docId, doc);
+        }
+        docIds.put(doc.id(), docId);
+        live.set(docId);
+        categories.add(doc.categoryId(), docId);
+        farmers.add(doc.farmerId(), docId);
+        stars.add(doc.star(), docId);
+        ocopStatuses.add(doc.ocopStatus(), docId);
+        unitPrices.add(doc.unitPrice(), docId);
+        priceRanges.add(priceRange(doc.price()), docId);
+    }
+
+    // Gọi khi đang giữ write lock
+    private void delete(String id) {
+        Integer docId = docIds.remove(id);
+        if (docId == null) {
+            return;
+        }
+        FacetDoc doc = docs.get(docId);
+        live.clear(docId);
+        categories.remove(doc.categoryId(), docId);
+        farmers.remove(doc.farmerId(), docId);
+        stars.remove(doc.star(), docId);
+        ocopStatuses.remove(doc.ocopStatus(), docId);
+        unitPrices.remove(doc.unitPrice(), docId);
+        priceRanges.remove(priceRange(doc.price()), docId);
+        docs.set(docId, null);
+        freeDocIds.push(docId);
+    }
+}
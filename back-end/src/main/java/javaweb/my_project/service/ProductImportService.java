@@ -0,0 +1,227 @@
+package javaweb.my_project.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import javaweb.my_project.dto.product.ProductImportResponse;
+import javaweb.my_project.dto.product.ProductRequest;
+import javaweb.my_project.entities.Category;
+import javaweb.my_project.entities.Farmer;
+import javaweb.my_project.entities.Image;
+import javaweb.my_project.entities.Product;
+import javaweb.my_project.mapper.ProductMapper;
+import javaweb.my_project.repository.CategoryRepository;
+import javaweb.my_project.security.SecurityUtil;
+import javaweb.my_project.util.CsvReader;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming bulk import of products (CSV or NDJSON). Rows are validated as they
+ * are read and inserted in fixed-size batches, one transaction and one JDBC
+ * batch per chunk, so memory and round trips do not grow with the file.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+    private static final int BATCH_SIZE = 100;
+    private static final String IMAGE_PATH_SEPARATOR = "|";
+
+    private final SecurityUtil securityUtil;
+    private final CategoryRepository categoryRepository;
+    private final ProductMapper productMapper;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    private record PendingRow(int row, ProductRequest request) {
+    }
+
+    public ProductImportResponse importProducts(String contentType, InputStream input) throws IOException {
+        if (contentType != null && contentType.startsWith("text/csv")) {
+            return importCsv(input);
+        }
+        return importNdjson(input);
+    }
+
+    public ProductImportResponse importCsv(InputStream input) throws IOException {
+        ImportContext context = new ImportContext();
+        CsvReader csvReader = new CsvReader(reader(input));
+        List<String> header = csvReader.readRecord();
+        if (header == null) {
+            return context.finish();
+        }
+        int row = 0;
+        while (true) {
+            List<String> record;
+            row++;
+            try {
+                record = csvReader.readRecord();
+            } catch (IllegalArgumentException e) {
+                context.reject(row, e.getMessage());
+                break;
+            }
+            if (record == null) {
+                break;
+            }
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                row--;
+                continue;
+            }
+            try {
+                context.accept(row, fromCsv(header, record));
+            } catch (IllegalArgumentException e) {
+                context.reject(row, "Invalid value: " + e.getMessage());
+            }
+        }
+        return context.finish();
+    }
+
+    public ProductImportResponse importNdjson(InputStream input) throws IOException {
+        ImportContext context = new ImportContext();
+        BufferedReader reader = reader(input);
+        int row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            row++;
+            try {
+                context.accept(row, objectMapper.readValue(line, ProductRequest.class));
+            } catch (JsonProcessingException e) {
+                context.reject(row, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+        return context.finish();
+    }
+
+    private BufferedReader reader(InputStream input) {
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    private ProductRequest fromCsv(List<String> header, List<String> record) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < header.size() && i < record.size(); i++) {
+            values.put(header.get(i).trim(), record.get(i).trim());
+        }
+        ProductRequest request = new ProductRequest();
+        request.setName(values.get("name"));
+        request.setDescription(values.get("description"));
+        request.setPrice(parseInteger(values.get("price")));
+        request.setInventory(parseInteger(values.get("inventory")));
+        request.setThumbnail(values.get("thumbnail"));
+        request.setUnitPrice(values.get("unitPrice"));
+        request.setCategoryId(values.get("categoryId"));
+        String imagePaths = values.get("imagePaths");
+        if (imagePaths != null && !imagePaths.isBlank()) {
+            request.setImagePaths(Arrays.stream(imagePaths.split("\\" + IMAGE_PATH_SEPARATOR))
+                    .map(String::trim)
+                    .filter(path -> !path.isEmpty())
+                    .collect(Collectors.toSet()));
+        }
+        return request;
+    }
+
+    private Integer parseInteger(String value) {
+        return value == null || value.isEmpty() ? null : Integer.valueOf(value);
+    }
+
+    // Trạng thái của một lần import: farmer, map category và batch đang chờ ghi
+    private class ImportContext {
+        final String farmerId = securityUtil.getFarmerId();
+        final Set<String> categoryIds = categoryRepository.findAll().stream()
+                .map(Category::getId)
+                .collect(Collectors.toSet());
+        final List<PendingRow> batch = new ArrayList<>(BATCH_SIZE);
+        final ProductImportResponse response = new ProductImportResponse();
+
+        void accept(int row, ProductRequest request) {
+            Set<ConstraintViolation<ProductRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                reject(row, violations.stream()
+                        .map(violation -> violation.getPropertyPath().toString().toUpperCase() + ": "
+                                + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                return;
+            }
+            if (!categoryIds.contains(request.getCategoryId())) {
+                reject(row, "Category not found");
+                return;
+            }
+            if (request.getOcopRequest() != null && Boolean.TRUE.equals(request.getOcopRequest().getEnabled())) {
+                reject(row, "OCOP information is not supported in bulk import");
+                return;
+            }
+            batch.add(new PendingRow(row, request));
+            response.setTotal(response.getTotal() + 1);
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void reject(int row, String message) {
+            response.setTotal(response.getTotal() + 1);
+            response.setFailed(response.getFailed() + 1);
+            response.getErrors().add(new ProductImportResponse.RowError(row, message));
+        }
+
+        ProductImportResponse finish() {
+            flush();
+            response.getErrors().sort(Comparator.comparingInt(ProductImportResponse.RowError::getRow));
+            return response;
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // getReference không tạo câu SELECT, category đã được kiểm tra bằng categoryIds
+                    Farmer farmer = entityManager.getReference(Farmer.class, farmerId);
+                    for (PendingRow pendingRow : batch) {
+                        entityManager.persist(toProduct(pendingRow.request(), farmer));
+                    }
+                    entityManager.flush();
+                    entityManager.clear();
+                });
+                response.setImported(response.getImported() + batch.size());
+            } catch (RuntimeException e) {
+                for (PendingRow pendingRow : batch) {
+                    response.setFailed(response.getFailed() + 1);
+                    response.getErrors().add(new ProductImportResponse.RowError(pendingRow.row(),
+                            "Failed to save product: " + e.getMessage()));
+                }
+            }
+            batch.clear();
+        }
+
+        Product toProduct(ProductRequest request, Farmer farmer) {
+            Product product = productMapper.toProduct(request);
+            product.setFarmer(farmer);
+            product.setCategory(entityManager.getReference(Category.class, request.getCategoryId()));
+            Set<Image> images = new HashSet<>();
+            if (request.getImagePaths() != null) {
+                for (String imagePath : request.getImagePaths()) {
+                    images.add(Image.builder().path(imagePath).product(product).build());
+                }
+            }
+            product.setImages(images);
+            return product;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.dto.product.ProductTagResponse;
+import javaweb.my_project.entities.Product;
+import javaweb.my_project.enums.ProductStatus;
+import javaweb.my_project.mapper.ProductMapper;
+import javaweb.my_project.repository.ProductRepository;
+import javaweb.my_project.util.TextUtil;
+import javaweb.my_project.util.TransactionUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inverted index over ACTIVE products (name, description, category name)
+ * with Vietnamese diacritic folding and BM25 ranking
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductSearchService {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int MAX_LIMIT = 100;
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // term -> (productId -> tf đã nhân trọng số theo field)
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    // productId -> (term -> tf), dùng để gỡ postings cũ khi cập nhật/xoá
+    private final Map<String, Map<String, Integer>> documents = new HashMap<>();
+    private final Map<String, Integer> documentLengths = new HashMap<>();
+    private long totalLength = 0;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Product> products = productRepository.findAllWithCategoryByStatus(ProductStatus.ACTIVE);
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            documentLengths.clear();
+            totalLength = 0;
+            for (Product product : products) {
+                put(product.getId(), analyze(product));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Index (or un-index if no longer ACTIVE) a product once the current transaction commits
+     */
+    public void index(Product product) {
+        String id = product.getId();
+        if (product.getStatus() != ProductStatus.ACTIVE) {
+            remove(id);
+            return;
+        }
+        Map<String, Integer> terms = analyze(product);
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                put(id, terms);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Re-index the ACTIVE products of a category whose name changed; applied when the rename commits
+     */
+    public void reindexCategory(String categoryId) {
+        for (Product product : productRepository.findAllWithCategoryByCategoryIdAndStatus(categoryId,
+                ProductStatus.ACTIVE)) {
+            index(product);
+        }
+    }
+
+    public void remove(String id) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                delete(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public List<ProductTagResponse> search(String query, int limit) {
+        int k = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<String> ids = searchIds(query, k);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Product> productMap = productRepository.findAllByIdIn(ids).stream()
+                .filter(product -> product.getStatus() == ProductStatus.ACTIVE)
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(productMap::get)
+                .filter(Objects::nonNull)
+                .map(productMapper::toProductTagResponse)
+                .toList();
+    }
+
+    /**
+     * Rank product ids by BM25 score, highest first
+     */
+    public List<String> searchIds(String query, int k) {
+        Set<String> terms = new LinkedHashSet<>(TextUtil.tokenize(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int n = documents.size();
+            if (n == 0) {
+                return List.of();
+            }
+            double avgLength = (double) totalLength / n;
+            for (String term : terms) {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                int df = posting.size();
+                double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                for (Map.Entry<String, Integer> entry : posting.entrySet()) {
+                    int tf = entry.getValue();
+                    int length = documentLengths.get(entry.getKey());
+                    double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+                    scores.merge(entry.getKey(), score, Double::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Min-heap kích thước k để lấy top-k mà không cần sort toàn bộ
+        PriorityQueue<Map.Entry<String, Double>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        List<String> ids = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ids.add(heap.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    private Map<String, Integer> analyze(Product product) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, product.getName(), NAME_WEIGHT);
+        addTerms(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+        if (product.getCategory() != null) {
+            addTerms(terms, product.getCategory().getName(), CATEGORY_WEIGHT);
+        }
+        return terms;
+    }
+
+    private void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String token : TextUtil.tokenize(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    // Gọi khi đang giữ write lock
+    private void put(String id, Map<String, Integer> terms) {
+        delete(id);
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : terms.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new HashMap<>()).put(id, entry.getValue());
+            length += entry.getValue();
+        }
+        documents.put(id, terms);
+        documentLengths.put(id, length);
+        totalLength += length;
+    }
+
+    // Gọi khi đang giữ write lock
+    private void delete(String id) {
+        Map<String, Integer> terms = documents.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<String, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        Integer length = documentLengths.remove(id);
+        if (length != null) {
+            totalLength -= length;
+        }
+    }
+}
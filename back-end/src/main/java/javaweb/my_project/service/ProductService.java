@@ -1,5 +1,9 @@
 package javaweb.my_project.service;
 
+import javaweb.my_project.dto.api.PageResponse;
+import javaweb.my_project.dto.api.ResourceVersion;
+import javaweb.my_project.dto.cache.CacheStatsResponse;
+import javaweb.my_project.dto.cache.CounterStatsResponse;
 import javaweb.my_project.dto.ocop.OcopRequest;
 import javaweb.my_project.dto.ocop.OcopUpdateRequest;
 import javaweb.my_project.dto.product.*;
@@ -14,6 +18,9 @@ import javaweb.my_project.repository.ProductRepository;
 import javaweb.my_project.repositories.OcopImageRepository;
 import javaweb.my_project.repositories.OcopRepository;
 import javaweb.my_project.security.SecurityUtil;
+import javaweb.my_project.util.CursorUtil;
+import javaweb.my_project.util.ProductCacheUtil;
+import javaweb.my_project.util.ProductCounterBuffer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -24,20 +31,27 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
+    private static final int MAX_ADMIN_PAGE_SIZE = 100;
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+
     private final ProductRepository productRepository;
     private final SecurityUtil securityUtil;
     private final CategoryRepository categoryRepository;
     private final ProductMapper productMapper;
     private final OcopRepository ocopRepository;
     private final OcopImageRepository ocopImageRepository;
+    private final ProductCacheUtil productCacheUtil;
+    private final ProductCounterBuffer productCounterBuffer;
+    private final ProductSearchService productSearchService;
+    private final ProductSuggestService productSuggestService;
+    private final ProductFacetService productFacetService;
 
     /**
      * Validate if current farmer owns the product
@@ -188,6 +202,9 @@ public class ProductService {
         }
 
         productRepository.save(product);
+        productSearchService.index(product);
+        productSuggestService.index(product);
+        productFacetService.index(product);
         return productMapper.toProductResponse(product);
     }
 
@@ -236,16 +253,50 @@ public class ProductService {
             }
         }
         ocop.setImages(currentOcopImages);
+        // OCOP không nằm trên bảng product, đánh dấu product thay đổi để tăng version (ETag)
+        product.setUpdatedAt(LocalDateTime.now());
 
         ocopRepository.save(ocop);
         productRepository.save(product); // Cascade should save ocop, but good to be explicit
+        productCacheUtil.evict(productId);
+        productFacetService.index(product);
 
         return productMapper.toProductResponse(product);
     }
 
-    public List<ProductResponse> getAllByAdmin() {
-        List<Product> products = productRepository.findAll(Sort.by("createdAt").descending());
-        return productMapper.toListProductResponse(products);
+    /**
+     * Admin listing with server-side paging and filters
+     */
+    @Transactional(readOnly = true)
+    public PageResponse<ProductResponse> getAllByAdmin(ProductAdminFilter filter, int page, int size) {
+        if (page < 0 || size <= 0) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Invalid page or size", "global-e-04");
+        }
+        Pageable pageable = PageRequest.of(page, Math.min(size, MAX_ADMIN_PAGE_SIZE),
+                Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
+        String keyword = filter.getKeyword() == null || filter.getKeyword().isBlank()
+                ? null
+                : filter.getKeyword().trim();
+        Page<String> idPage = productRepository.findAdminPageIds(filter.getStatus(),
+                resolveCategoryPath(filter.getCategoryId()), filter.getFarmerId(), keyword, pageable);
+        Map<String, Product> productsById = productRepository.findAllWithDetailsByIdIn(idPage.getContent())
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<ProductResponse> content = idPage.getContent().stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .map(productMapper::toProductResponse)
+                .toList();
+        return PageResponse.<ProductResponse>builder()
+                .content(content)
+                .page(idPage.getNumber())
+                .totalPages(idPage.getTotalPages())
+                .totalElements(idPage.getTotalElements())
+                .build();
+    }
+
+    String resolveCategoryPath(String categoryId) {
+        return categoryId == null || categoryId.isBlank() ? null : findCategoryById(categoryId).getPath();
     }
 
     public List<ProductResponse> getAllByFarmer() {
@@ -267,14 +318,122 @@ public class ProductService {
     }
 
     public Page<ProductTagResponse> getAllActiveProduct(int page, int size) {
+        return getAllActiveProduct(page, size, null);
+    }
+
+    /**
+     * Active products, optionally restricted to a category and all of its sub-categories
+     */
+    public Page<ProductTagResponse> getAllActiveProduct(int page, int size, String categoryId) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("rating").descending());
-        Page<Product> productPage = productRepository.findByStatus(ProductStatus.ACTIVE, pageable);
+        Page<Product> productPage;
+        if (categoryId == null || categoryId.isBlank()) {
+            productPage = productRepository.findListingPageByStatus(ProductStatus.ACTIVE, pageable);
+        } else {
+            Category category = findCategoryById(categoryId);
+            productPage = productRepository.findListingPageByStatusAndCategoryPath(ProductStatus.ACTIVE,
+                    category.getPath(), pageable);
+        }
         return productPage.map(productMapper::toProductTagResponse);
     }
 
+    /**
+     * Keyset (cursor) pagination for the public feed: cost per page does not grow with depth
+     */
+    public PageResponse<ProductTagResponse> getActiveProductFeed(String cursor, int size, String categoryId) {
+        if (size <= 0) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Page size must be greater than 0", "global-e-04");
+        }
+        size = Math.min(size, MAX_FEED_PAGE_SIZE);
+        Pageable limit = PageRequest.of(0, size + 1);
+        String categoryPath = categoryId == null || categoryId.isBlank() ? null
+                : findCategoryById(categoryId).getPath();
+        List<Product> products;
+        if (cursor == null || cursor.isBlank()) {
+            products = productRepository.findFirstKeysetPage(ProductStatus.ACTIVE, categoryPath, limit);
+        } else {
+            String[] parts = CursorUtil.decode(cursor, 3);
+            Double rating;
+            LocalDateTime createdAt;
+            try {
+                rating = Double.valueOf(parts[0]);
+                createdAt = LocalDateTime.parse(parts[1]);
+            } catch (RuntimeException e) {
+                throw new AppException(HttpStatus.BAD_REQUEST, "Invalid cursor", "global-e-03");
+            }
+            products = productRepository.findKeysetPageAfter(ProductStatus.ACTIVE, categoryPath, rating, createdAt,
+                    parts[2], limit);
+        }
+
+        boolean hasNext = products.size() > size;
+        if (hasNext) {
+            products = products.subList(0, size);
+        }
+        String nextCursor = null;
+        if (hasNext) {
+            Product last = products.get(products.size() - 1);
+            nextCursor = CursorUtil.encode(String.valueOf(last.getRating()), last.getCreatedAt().toString(),
+                    last.getId());
+        }
+        return PageResponse.<ProductTagResponse>builder()
+                .content(products.stream().map(productMapper::toProductTagResponse).toList())
+                .nextCursor(nextCursor)
+                .hasNext(hasNext)
+                .build();
+    }
+
     public ProductResponse getById(String id) {
-        Product product = findProductById(id);
-        return productMapper.toProductResponse(product);
+        return productCacheUtil.get(id,
+                productId -> productMapper.toProductDetailResponse(findProductById(productId)));
+    }
+
+    /**
+     * Live view count (flushed + still buffered), kept out of the cached detail so views do not change its ETag
+     */
+    public long getViews(String id) {
+        Integer flushed = productRepository.findViewsById(id).orElseThrow(
+                () -> new AppException(HttpStatus.NOT_FOUND, "Product not found", "product-e-01"));
+        return (flushed == null ? 0 : flushed) + productCounterBuffer.pendingViews(id);
+    }
+
+    /**
+     * Count a view of the product detail, including views answered with 304
+     */
+    public void recordView(String id) {
+        productCounterBuffer.addView(id);
+    }
+
+    /**
+     * ETag/Last-Modified of the product detail, read without loading the entity
+     */
+    public ResourceVersion getVersion(String id) {
+        ProductVersionView view = productRepository.findVersionById(id).orElseThrow(
+                () -> new AppException(HttpStatus.NOT_FOUND, "Product not found", "product-e-01"));
+        // sold được cộng bằng SQL không tăng version, nên đưa thẳng vào ETag; views không nằm trong body
+        String etag = "product-" + id + "-" + view.getVersion() + "-" + view.getFarmerVersion() + "-"
+                + view.getCategoryVersion() + "-" + view.getSold();
+        return ResourceVersion.of(etag, view.getUpdatedAt(), view.getFarmerUpdatedAt(),
+                view.getCategoryUpdatedAt(), view.getCountersUpdatedAt());
+    }
+
+    public CacheStatsResponse getCacheStats() {
+        return productCacheUtil.getStats();
+    }
+
+    public CounterStatsResponse getCounterStats() {
+        return productCounterBuffer.getStats();
+    }
+
+    public List<ProductTagResponse> search(String query, int limit) {
+        return productSearchService.search(query, limit);
+    }
+
+    public ProductFacetResponse getFacets(ProductFacetRequest request) {
+        return productFacetService.search(request);
+    }
+
+    public List<ProductNameResponse> suggest(String query, int limit) {
+        return productSuggestService.suggest(query, limit);
     }
 
     public List<ProductNameResponse> getProductNames() {
@@ -297,8 +456,13 @@ public class ProductService {
 
         // Intelligently update images
         updateProductImages(product, request.getImagePaths());
+        product.setUpdatedAt(LocalDateTime.now());
 
         productRepository.save(product);
+        productCacheUtil.evict(id);
+        productSearchService.index(product);
+        productSuggestService.index(product);
+        productFacetService.index(product);
         return productMapper.toProductResponse(product);
     }
 
@@ -310,6 +474,10 @@ public class ProductService {
         product.setStatus(ProductStatus.DELETED);
         product.setDeletedAt(LocalDateTime.now());
         productRepository.save(product);
+        productCacheUtil.evict(id);
+        productSearchService.remove(id);
+        productSuggestService.remove(id);
+        productFacetService.remove(id);
     }
 
     @Transactional
@@ -329,6 +497,10 @@ public class ProductService {
 
         product.setStatus(newStatus);
         productRepository.save(product);
+        productCacheUtil.evict(product.getId());
+        productSearchService.index(product);
+        productSuggestService.index(product);
+        productFacetService.index(product);
         return productMapper.toProductResponse(product);
     }
 
@@ -349,6 +521,10 @@ public class ProductService {
 
         product.setStatus(newStatus);
         productRepository.save(product);
+        productCacheUtil.evict(product.getId());
+        productSearchService.index(product);
+        productSuggestService.index(product);
+        productFacetService.index(product);
         return productMapper.toProductResponse(product);
     }
 }
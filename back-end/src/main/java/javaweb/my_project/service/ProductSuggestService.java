@@ -0,0 +1,309 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.dto.product.ProductNameResponse;
+import javaweb.my_project.entities.Product;
+import javaweb.my_project.enums.ProductStatus;
+import javaweb.my_project.repository.ProductRepository;
+import javaweb.my_project.util.TextUtil;
+import javaweb.my_project.util.TransactionUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Diacritic-insensitive prefix trie over ACTIVE product names.
+ * Each node keeps its own top-k (by sold, then rating) so a keystroke lookup
+ * is a walk of the prefix length, with no database access. Keys are indexed
+ * only MAX_DEPTH characters deep; longer queries filter the deepest node.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductSuggestService {
+    private static final int TOP_K = 10;
+    // Gợi ý theo từng phím gõ hiếm khi dài hơn mức này; phần sau của key không tạo node
+    private static final int MAX_DEPTH = 16;
+    private static final Comparator<Suggestion> RANKING = Comparator.comparingInt(Suggestion::sold).reversed()
+            .thenComparing(Comparator.comparingDouble(Suggestion::rating).reversed())
+            .thenComparing(Suggestion::id);
+
+    private final ProductRepository productRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Map<String, Suggestion> suggestions = new HashMap<>();
+
+    private record Suggestion(String id, String name, String key, int sold, double rating) {
+    }
+
+    // Các map/list chỉ được tạo khi cần: phần lớn node chỉ có một con và không có terminal
+    private static class Node {
+        Map<Character, Node> children;
+        // Sản phẩm có key kết thúc tại node này (ở độ sâu MAX_DEPTH: mọi key dài hơn)
+        Map<String, Suggestion> terminals;
+        // Top-k của cả cây con đã sắp theo RANKING
+        List<Suggestion> top;
+
+        Node child(char c) {
+            return children == null ? null : children.get(c);
+        }
+
+        boolean isEmpty() {
+            return (children == null || children.isEmpty()) && (terminals == null || terminals.isEmpty());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Product> products = productRepository.findAllByStatus(ProductStatus.ACTIVE, Sort.unsorted());
+        lock.writeLock().lock();
+        try {
+            suggestions.clear();
+            root.children = null;
+            root.terminals = null;
+            root.top = null;
+            for (Product product : products) {
+                put(toSuggestion(product));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Refresh (or drop if no longer ACTIVE) a product once the current transaction commits
+     */
+    public void index(Product product) {
+        String id = product.getId();
+        Suggestion suggestion = product.getStatus() == ProductStatus.ACTIVE ? toSuggestion(product) : null;
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                delete(id);
+                if (suggestion != null) {
+                    put(suggestion);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void remove(String id) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                delete(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Apply sold deltas already written to the database (counter flush), so the ranking follows sales
+     */
+    public void addSold(Map<String, Long> deltas) {
+        lock.writeLock().lock();
+        try {
+            deltas.forEach((id, delta) -> {
+                Suggestion current = suggestions.get(id);
+                if (current == null || delta == 0) {
+                    return;
+                }
+                delete(id);
+                put(new Suggestion(current.id(), current.name(), current.key(),
+                        (int) (current.sold() + delta), current.rating()));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ProductNameResponse> suggest(String query, int limit) {
+        String prefix = String.join(" ", TextUtil.tokenize(query));
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        // Giữ khoảng trắng cuối để "ca " không khớp "cai"
+        if (query.endsWith(" ")) {
+            prefix = prefix + " ";
+        }
+        int k = Math.max(1, Math.min(limit, TOP_K));
+
+        List<Suggestion> top;
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            int depth = Math.min(prefix.length(), MAX_DEPTH);
+            for (int i = 0; i < depth && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            if (node == null) {
+                top = List.of();
+            } else if (prefix.length() <= MAX_DEPTH) {
+                top = node.top == null ? List.of() : List.copyOf(node.top.subList(0, Math.min(k, node.top.size())));
+            } else {
+                top = filterDeep(node, prefix, k);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<ProductNameResponse> responses = new ArrayList<>();
+        for (Suggestion suggestion : top) {
+            ProductNameResponse response = new ProductNameResponse();
+            response.setId(suggestion.id());
+            response.setName(suggestion.name());
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private Suggestion toSuggestion(Product product) {
+        return new Suggestion(product.getId(), product.getName(),
+                String.join(" ", TextUtil.tokenize(product.getName())),
+                product.getSold() == null ? 0 : product.getSold(),
+                product.getRating() == null ? 0.0 : product.getRating());
+    }
+
+    // Mỗi từ trong tên là một điểm bắt đầu: "ca phe sua" -> "ca phe sua", "phe sua", "sua"
+    private List<String> keysOf(Suggestion suggestion) {
+        List<String> keys = new ArrayList<>();
+        String key = suggestion.key();
+        for (int i = 0; i < key.length(); i++) {
+            if (i == 0 || key.charAt(i - 1) == ' ') {
+                keys.add(key.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    // Query dài hơn MAX_DEPTH: lọc các sản phẩm dừng ở node sâu nhất theo đủ prefix
+    private List<Suggestion> filterDeep(Node node, String prefix, int k) {
+        if (node.terminals == null) {
+            return List.of();
+        }
+        List<Suggestion> matches = new ArrayList<>();
+        for (Suggestion suggestion : node.terminals.values()) {
+            for (String key : keysOf(suggestion)) {
+                if (key.startsWith(prefix)) {
+                    matches.add(suggestion);
+                    break;
+                }
+            }
+        }
+        matches.sort(RANKING);
+        return matches.subList(0, Math.min(k, matches.size()));
+    }
+
+    // Gọi khi đang giữ write lock
+    private void put(Suggestion suggestion) {
+        suggestions.put(suggestion.id(), suggestion);
+        for (String key : keysOf(suggestion)) {
+            Node node = root;
+            offer(node, suggestion);
+            int depth = Math.min(key.length(), MAX_DEPTH);
+            for (int i = 0; i < depth; i++) {
+                if (node.children == null) {
+                    node.children = new HashMap<>(4);
+                }
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+                offer(node, suggestion);
+            }
+            if (node.terminals == null) {
+                node.terminals = new HashMap<>(4);
+            }
+            node.terminals.put(suggestion.id(), suggestion);
+        }
+    }
+
+    // Chèn vào top-k đã sắp xếp nếu đủ hạng, không tính lại cả danh sách
+    private static void offer(Node node, Suggestion suggestion) {
+        if (node.top == null) {
+            node.top = new ArrayList<>(2);
+        }
+        List<Suggestion> top = node.top;
+        for (Suggestion current : top) {
+            // Cùng sản phẩm đi qua node này bằng một key khác
+            if (current.id().equals(suggestion.id())) {
+                return;
+            }
+        }
+        int index = Collections.binarySearch(top, suggestion, RANKING);
+        int insertAt = index >= 0 ? index : -index - 1;
+        if (insertAt >= TOP_K) {
+            return;
+        }
+        top.add(insertAt, suggestion);
+        if (top.size() > TOP_K) {
+            top.remove(top.size() - 1);
+        }
+    }
+
+    // Gọi khi đang giữ write lock
+    private void delete(String id) {
+        Suggestion suggestion = suggestions.remove(id);
+        if (suggestion == null) {
+            return;
+        }
+        for (String key : keysOf(suggestion)) {
+            int depth = Math.min(key.length(), MAX_DEPTH);
+            List<Node> path = new ArrayList<>(depth + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < depth && node != null; i++) {
+                node = node.child(key.charAt(i));
+                path.add(node);
+            }
+            if (node == null) {
+                continue;
+            }
+            if (node.terminals != null) {
+                node.terminals.remove(id);
+                if (node.terminals.isEmpty()) {
+                    node.terminals = null;
+                }
+            }
+            // Cắt các node rỗng từ lá lên
+            for (int i = path.size() - 1; i > 0; i--) {
+                if (!path.get(i).isEmpty()) {
+                    break;
+                }
+                Node parent = path.get(i - 1);
+                parent.children.remove(key.charAt(i - 1));
+                if (parent.children.isEmpty()) {
+                    parent.children = null;
+                }
+                path.remove(i);
+            }
+            // Chỉ node có sản phẩm này trong top mới phải tính lại, từ dưới lên
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node current = path.get(i);
+                if (current.top != null && current.top.stream().anyMatch(s -> s.id().equals(id))) {
+                    recompute(current);
+                }
+            }
+        }
+    }
+
+    private void recompute(Node node) {
+        Map<String, Suggestion> candidates = node.terminals == null ? new HashMap<>() : new HashMap<>(node.terminals);
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                if (child.top != null) {
+                    for (Suggestion suggestion : child.top) {
+                        candidates.putIfAbsent(suggestion.id(), suggestion);
+                    }
+                }
+            }
+        }
+        List<Suggestion> sorted = new ArrayList<>(candidates.values());
+        sorted.sort(RANKING);
+        node.top = sorted.size() > TOP_K ? new ArrayList<>(sorted.subList(0, TOP_K)) : sorted;
+    }
+}
@@ -0,0 +1,17 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.dto.payment.VNPayQueryResult;
+
+import java.time.LocalDateTime;
+
+/**
+ * Looks up a VNPAY transaction (querydr). The HTTP implementation is the default bean;
+ * declare another bean of this type to replace it.
+ */
+public interface VNPayQueryClient {
+    /**
+     * @param txnRef          vnp_TxnRef sent with the payment link
+     * @param transactionDate vnp_CreateDate of that payment link
+     */
+    VNPayQueryResult query(String txnRef, LocalDateTime transactionDate);
+}
@@ -9,6 +9,8 @@ import javaweb.my_project.exception.AppException;
 import javaweb.my_project.mapper.ProductMapper;
 import javaweb.my_project.repository.ProductRepository;
 import javaweb.my_project.security.SecurityUtil;
+import javaweb.my_project.service.ProductFacetService;
+import javaweb.my_project.util.ProductCacheUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -24,6 +26,8 @@ public class AdminOcopService {
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
     private final SecurityUtil securityUtil;
+    private final ProductCacheUtil productCacheUtil;
+    private final ProductFacetService productFacetService;
 
     /**
      * Find product by ID or throw exception
@@ -57,8 +61,11 @@ public class AdminOcopService {
         ocop.setVerifiedBy(securityUtil.getAccountId()); // Using getAccountId() as getUserId() is unavailable
         ocop.setVerifiedAt(LocalDateTime.now());
         ocop.setReason(null); // Clear reason if previously rejected
+        product.setUpdatedAt(LocalDateTime.now());
 
         productRepository.save(product);
+        productCacheUtil.evict(productId);
+        productFacetService.index(product);
         return productMapper.toProductResponse(product);
     }
 
@@ -78,8 +85,11 @@ public class AdminOcopService {
         ocop.setReason(reason);
         ocop.setVerifiedBy(securityUtil.getAccountId()); // Using getAccountId() as getUserId() is unavailable
         ocop.setVerifiedAt(LocalDateTime.now());
+        product.setUpdatedAt(LocalDateTime.now());
 
         productRepository.save(product);
+        productCacheUtil.evict(productId);
+        productFacetService.index(product);
         return productMapper.toProductResponse(product);
     }
 }
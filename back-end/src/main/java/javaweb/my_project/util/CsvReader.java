@@ -0,0 +1,63 @@
+package javaweb.my_project.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Đọc CSV theo từng record (RFC 4180): hỗ trợ field có dấu ngoặc kép, dấu phẩy và xuống dòng bên trong
+public class CsvReader {
+    private final BufferedReader reader;
+
+    public CsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next record, or null at end of input
+     */
+    public List<String> readRecord() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (!quoted) {
+                break;
+            }
+            // Field còn mở ngoặc kép: đọc tiếp dòng sau
+            line = reader.readLine();
+            if (line == null) {
+                throw new IllegalArgumentException("Unterminated quoted field");
+            }
+            field.append('\n');
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
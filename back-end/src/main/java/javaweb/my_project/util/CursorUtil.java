@@ -0,0 +1,30 @@
+package javaweb.my_project.util;
+
+import javaweb.my_project.exception.AppException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class CursorUtil {
+    private static final String SEPARATOR = "|";
+
+    // Mã hoá các giá trị sort key thành cursor opaque cho client
+    public static String encode(String... parts) {
+        String raw = String.join(SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String[] decode(String cursor, int expectedParts) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            if (parts.length != expectedParts) {
+                throw new IllegalArgumentException("Unexpected cursor format");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Invalid cursor", "global-e-03");
+        }
+    }
+}
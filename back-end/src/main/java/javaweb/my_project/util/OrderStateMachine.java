@@ -0,0 +1,66 @@
+package javaweb.my_project.util;
+
+import javaweb.my_project.enums.OrderStatus;
+import javaweb.my_project.enums.PaymentStatus;
+import javaweb.my_project.exception.AppException;
+import org.springframework.http.HttpStatus;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Order state machine as a lookup table: for each actor, the target status maps to
+ * the statuses it may be reached from and the error returned otherwise.
+ */
+public final class OrderStateMachine {
+    public enum Actor {
+        FARMER,
+        CONSUMER
+    }
+
+    private record Transition(Set<OrderStatus> from, String message, String code) {
+    }
+
+    private static final Set<OrderStatus> CANCELABLE = EnumSet.of(OrderStatus.PENDING, OrderStatus.CONFIRMED,
+            OrderStatus.DELIVERING, OrderStatus.DELIVERED);
+
+    private static final Map<Actor, Map<OrderStatus, Transition>> TRANSITIONS = Map.of(
+            Actor.FARMER, Map.of(
+                    OrderStatus.CONFIRMED, new Transition(EnumSet.of(OrderStatus.PENDING),
+                            "Order must be in PENDING status to confirm.", "order-e-03"),
+                    OrderStatus.DELIVERING, new Transition(EnumSet.of(OrderStatus.CONFIRMED),
+                            "Order must be in CONFIRMED status to deliver.", "order-e-04"),
+                    OrderStatus.DELIVERED, new Transition(EnumSet.of(OrderStatus.DELIVERING),
+                            "Order must be in DELIVERING status to mark as delivered.", "order-e-05"),
+                    OrderStatus.CANCELED, new Transition(CANCELABLE,
+                            "Cannot cancel an order that has been received or canceled.", "order-e-06")),
+            Actor.CONSUMER, Map.of(
+                    OrderStatus.CANCELED, new Transition(CANCELABLE,
+                            "Cannot cancel an order that has been received or canceled.", "order-e-05"),
+                    OrderStatus.RECEIVED, new Transition(EnumSet.of(OrderStatus.DELIVERED),
+                            "Order must be in DELIVERED status to receive.", "order-e-06")));
+
+    private static final Map<OrderStatus, PaymentStatus> PAYMENT_STATUS_AFTER = Map.of(
+            OrderStatus.DELIVERED, PaymentStatus.PAID,
+            OrderStatus.CANCELED, PaymentStatus.CANCELED);
+
+    private OrderStateMachine() {
+    }
+
+    public static void validate(Actor actor, OrderStatus from, OrderStatus to) {
+        Transition transition = TRANSITIONS.get(actor).get(to);
+        if (transition == null) {
+            throw new AppException(HttpStatus.FORBIDDEN, "You don't have permission to edit order to this status.",
+                    "order-e-02");
+        }
+        if (!transition.from().contains(from)) {
+            throw new AppException(HttpStatus.FORBIDDEN, transition.message(), transition.code());
+        }
+    }
+
+    // Trạng thái thanh toán đi kèm khi chuyển sang trạng thái đích, null nếu giữ nguyên
+    public static PaymentStatus paymentStatusAfter(OrderStatus to) {
+        return PAYMENT_STATUS_AFTER.get(to);
+    }
+}
@@ -0,0 +1,118 @@
+package javaweb.my_project.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signed VNPAY payment URLs by vnp_TxnRef, reused until their vnp_ExpireDate.
+ * Entries are dropped when any of their orders changes status (see {@link #evict}).
+ */
+@Component
+public class PaymentUrlCache {
+
+    private record Entry(String paymentUrl, LocalDateTime expiresAt, List<String> orderIds) {
+    }
+
+    private final int maxSize;
+
+    // LRU theo thứ tự truy cập, mọi thao tác đều synchronized trên entries (kể cả txnRefByOrderId)
+    private final Map<String, Entry> entries;
+    // Đơn -> vnp_TxnRef của link đang cache, để invalidate theo id đơn cả khi link dùng chung cho nhóm
+    private final Map<String, String> txnRefByOrderId = new HashMap<>();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PaymentUrlCache(@Value("${app.cache.payment-url.max-size:1000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > PaymentUrlCache.this.maxSize) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cached URL for txnRef that is still valid at validUntil, or null
+     */
+    public String get(String txnRef, LocalDateTime validUntil) {
+        synchronized (entries) {
+            Entry entry = entries.get(txnRef);
+            if (entry == null) {
+                return null;
+            }
+            if (!entry.expiresAt().isAfter(validUntil)) {
+                entries.remove(txnRef);
+                unindex(txnRef, entry);
+                return null;
+            }
+            return entry.paymentUrl();
+        }
+    }
+
+    /**
+     * Read before loading the orders; {@link #put} ignores the URL if an eviction happened since
+     */
+    public long generation() {
+        return invalidations.get();
+    }
+
+    public void put(String txnRef, List<String> orderIds, String paymentUrl, LocalDateTime expiresAt, long generation) {
+        synchronized (entries) {
+            if (generation != invalidations.get()) {
+                return;
+            }
+            Entry previous = entries.put(txnRef, new Entry(paymentUrl, expiresAt, List.copyOf(orderIds)));
+            if (previous != null) {
+                unindex(txnRef, previous);
+            }
+            orderIds.forEach(orderId -> txnRefByOrderId.put(orderId, txnRef));
+        }
+    }
+
+    /**
+     * Evict the URLs of these orders now and again after the current transaction commits,
+     * so a concurrent request cannot re-cache a URL built from the pre-commit state
+     */
+    public void evict(Collection<String> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = List.copyOf(orderIds);
+        invalidate(ids);
+        TransactionUtil.afterCommit(() -> invalidate(ids));
+    }
+
+    private void invalidate(Collection<String> orderIds) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            for (String orderId : orderIds) {
+                String txnRef = txnRefByOrderId.get(orderId);
+                if (txnRef != null) {
+                    Entry entry = entries.remove(txnRef);
+                    if (entry != null) {
+                        unindex(txnRef, entry);
+                    } else {
+                        txnRefByOrderId.remove(orderId);
+                    }
+                }
+            }
+        }
+    }
+
+    private void unindex(String txnRef, Entry entry) {
+        entry.orderIds().forEach(orderId -> txnRefByOrderId.remove(orderId, txnRef));
+    }
+}
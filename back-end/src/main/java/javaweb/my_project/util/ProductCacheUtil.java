@@ -0,0 +1,138 @@
+package javaweb.my_project.util;
+
+import javaweb.my_project.dto.cache.CacheStatsResponse;
+import javaweb.my_project.dto.product.ProductResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+@Component
+public class ProductCacheUtil {
+
+    private final int maxSize;
+
+    // LRU theo thứ tự truy cập, mọi thao tác đều synchronized trên entries
+    private final Map<String, ProductResponse> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ProductCacheUtil(@Value("${app.cache.product.max-size:1000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ProductResponse> eldest) {
+                if (size() > ProductCacheUtil.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get cached product or load it with the given loader (read-through)
+     */
+    public ProductResponse get(String id, Function<String, ProductResponse> loader) {
+        synchronized (entries) {
+            ProductResponse cached = entries.get(id);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        // Nếu có invalidate trong lúc đang load thì không ghi giá trị (có thể đã cũ) vào cache
+        long generation = invalidations.get();
+        ProductResponse loaded = loader.apply(id);
+        synchronized (entries) {
+            if (loaded != null && generation == invalidations.get()) {
+                entries.put(id, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Evict product now and again after the current transaction commits,
+     * so a concurrent read cannot re-cache the pre-commit state
+     */
+    public void evict(String id) {
+        if (id == null) {
+            return;
+        }
+        nowAndAfterCommit(() -> invalidate(List.of(id)));
+    }
+
+    /**
+     * Same as {@link #evict} for several products, e.g. every product embedding a changed farmer
+     */
+    public void evictAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<String> snapshot = List.copyOf(ids);
+        nowAndAfterCommit(() -> invalidate(snapshot));
+    }
+
+    /**
+     * Drop every product now and again after the current transaction commits (like {@link #evict})
+     */
+    public void clear() {
+        nowAndAfterCommit(() -> {
+            synchronized (entries) {
+                invalidations.incrementAndGet();
+                entries.clear();
+            }
+        });
+    }
+
+    public CacheStatsResponse getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return CacheStatsResponse.builder()
+                .size(size)
+                .maxSize(maxSize)
+                .hits(hitCount)
+                .misses(missCount)
+                .evictions(evictions.get())
+                .invalidations(invalidations.get())
+                .hitRate(total == 0 ? 0.0 : (double) hitCount / total)
+                .build();
+    }
+
+    private void invalidate(List<String> ids) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            ids.forEach(entries::remove);
+        }
+    }
+
+    private static void nowAndAfterCommit(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package javaweb.my_project.util;
+
+import jakarta.annotation.PreDestroy;
+import javaweb.my_project.dto.cache.CounterStatsResponse;
+import javaweb.my_project.service.ProductSuggestService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer for Product.sold and Product.views. Increments land in a
+ * striped LongAdder per product (no row lock, no read-modify-write) and are
+ * written as aggregated deltas in one JDBC batch on a schedule and on shutdown.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCounterBuffer {
+    // counters_updated_at chỉ đổi theo sold (nằm trong ETag); views thay đổi liên tục nên không tính
+    private static final String FLUSH_SQL = "UPDATE product SET sold = sold + ?, views = views + ?, " +
+            "counters_updated_at = CASE WHEN ? > 0 THEN ? ELSE counters_updated_at END WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductCacheUtil productCacheUtil;
+    private final ProductSuggestService productSuggestService;
+
+    private final Map<String, LongAdder> sold = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> views = new ConcurrentHashMap<>();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private volatile int lastFlushRows;
+    private volatile LocalDateTime lastFlushAt;
+
+    public void addSold(String productId, long delta) {
+        add(sold, productId, delta);
+    }
+
+    public void addView(String productId) {
+        add(views, productId, 1);
+    }
+
+    /**
+     * Views counted but not yet flushed for one product
+     */
+    public long pendingViews(String productId) {
+        LongAdder adder = views.get(productId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Write pending deltas. sumThenReset is atomic per cell, so increments racing
+     * with the flush are kept for the next round instead of being lost.
+     */
+    @Scheduled(fixedDelayString = "${app.counter.flush-interval-ms:10000}")
+    public synchronized void flush() {
+        Set<String> productIds = new HashSet<>(sold.keySet());
+        productIds.addAll(views.keySet());
+        List<Object[]> args = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (String productId : productIds) {
+            long soldDelta = drain(sold, productId);
+            long viewsDelta = drain(views, productId);
+            if (soldDelta == 0 && viewsDelta == 0) {
+                continue;
+            }
+            args.add(new Object[] { soldDelta, viewsDelta, soldDelta, now, productId });
+        }
+        if (!args.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(FLUSH_SQL, args);
+            } catch (RuntimeException e) {
+                // Ghi lỗi thì trả delta lại buffer để lần flush sau thử lại
+                for (Object[] arg : args) {
+                    add(sold, (String) arg[4], (Long) arg[0]);
+                    add(views, (String) arg[4], (Long) arg[1]);
+                }
+                throw e;
+            }
+            // sold nằm trong ETag và body của chi tiết sản phẩm: chỉ bỏ cache khi sold đổi
+            Map<String, Long> soldDeltas = new HashMap<>();
+            for (Object[] arg : args) {
+                if ((Long) arg[0] != 0) {
+                    productCacheUtil.evict((String) arg[4]);
+                    soldDeltas.put((String) arg[4], (Long) arg[0]);
+                }
+            }
+            // Gợi ý tìm kiếm xếp hạng theo sold
+            if (!soldDeltas.isEmpty()) {
+                productSuggestService.addSold(soldDeltas);
+            }
+        }
+        flushes.incrementAndGet();
+        flushedRows.addAndGet(args.size());
+        lastFlushRows = args.size();
+        lastFlushAt = now;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public CounterStatsResponse getStats() {
+        Set<String> pending = new HashSet<>();
+        long pendingSold = sum(sold, pending);
+        long pendingViews = sum(views, pending);
+        return CounterStatsResponse.builder()
+                .pendingProducts(pending.size())
+                .pendingSold(pendingSold)
+                .pendingViews(pendingViews)
+                .flushes(flushes.get())
+                .flushedRows(flushedRows.get())
+                .lastFlushRows(lastFlushRows)
+                .lastFlushAt(lastFlushAt)
+                .build();
+    }
+
+    private void add(Map<String, LongAdder> counters, String productId, long delta) {
+        counters.computeIfAbsent(productId, id -> new LongAdder()).add(delta);
+    }
+
+    private long drain(Map<String, LongAdder> counters, String productId) {
+        LongAdder adder = counters.get(productId);
+        return adder == null ? 0 : adder.sumThenReset();
+    }
+
+    private long sum(Map<String, LongAdder> counters, Set<String> pending) {
+        long total = 0;
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            long value = entry.getValue().sum();
+            if (value != 0) {
+                pending.add(entry.getKey());
+                total += value;
+            }
+        }
+        return total;
+    }
+}
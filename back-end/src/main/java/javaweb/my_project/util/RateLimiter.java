@@ -0,0 +1,31 @@
+package javaweb.my_project.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces permits evenly at a fixed rate (no bursts); callers wait for their slot
+ */
+public class RateLimiter {
+    private final long intervalNanos;
+    private long nextFreeAt = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextFreeAt);
+            nextFreeAt = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
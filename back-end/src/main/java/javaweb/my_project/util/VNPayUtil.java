@@ -1,36 +1,155 @@
 package javaweb.my_project.util;
 
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
+import javaweb.my_project.config.VNPayConfig;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @Component
-@RequiredArgsConstructor
 public class VNPayUtil {
+    // Định dạng vnp_CreateDate/vnp_ExpireDate/vnp_TransactionDate (immutable, dùng chung giữa các thread)
+    public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    // Giờ VNPAY (GMT+7), không phụ thuộc timezone của server
+    public static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final String HMAC_SHA512 = "HmacSHA512";
+    private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+    private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+    // Ký tự URLEncoder giữ nguyên: a-z A-Z 0-9 . - * _
+    private static final boolean[] URL_SAFE = new boolean[128];
 
-    public static String hmacSHA512(String key, String data) {
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            URL_SAFE[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            URL_SAFE[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            URL_SAFE[c] = true;
+        }
+        URL_SAFE['.'] = true;
+        URL_SAFE['-'] = true;
+        URL_SAFE['*'] = true;
+        URL_SAFE['_'] = true;
+    }
+
+    // Mac không thread-safe: mỗi thread giữ một instance đã init với hash secret, doFinal tự reset để dùng lại
+    private final ThreadLocal<Mac> mac;
+
+    public VNPayUtil(VNPayConfig vnPayConfig) {
+        SecretKeySpec secretKey = new SecretKeySpec(vnPayConfig.getHashSecret().getBytes(StandardCharsets.UTF_8),
+                HMAC_SHA512);
+        this.mac = ThreadLocal.withInitial(() -> newMac(secretKey));
+    }
+
+    private static Mac newMac(SecretKeySpec secretKey) {
         try {
-            Mac mac = Mac.getInstance("HmacSHA512");
-            SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
+            Mac mac = Mac.getInstance(HMAC_SHA512);
             mac.init(secretKey);
-            byte[] hash = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1)
-                    hexString.append('0');
-                hexString.append(hex);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize HMAC-SHA512", e);
+        }
+    }
+
+    /**
+     * HMAC-SHA512 of data with the configured hash secret, as lowercase hex
+     */
+    public String sign(String data) {
+        return toHex(mac.get().doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Check vnp_SecureHash against the canonical query of the other fields (constant-time compare)
+     */
+    public boolean verify(SortedMap<String, String> fields, String secureHash) {
+        if (secureHash == null) {
+            return false;
+        }
+        byte[] expected = sign(buildQuery(fields)).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, secureHash.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * One-off HMAC-SHA512 with an arbitrary key; prefer {@link #sign} for the configured secret
+     */
+    public static String hmacSHA512(String key, String data) {
+        Mac mac = newMac(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_SHA512));
+        return toHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            chars[i * 2] = HEX_LOWER[b >>> 4];
+            chars[i * 2 + 1] = HEX_LOWER[b & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Canonical VNPAY query in one pass over fields already sorted by name: name=value pairs joined by '&',
+     * values form-encoded like URLEncoder.encode(value, US_ASCII), empty values skipped.
+     * The same string is signed and sent as the query, so it is built only once.
+     */
+    public static String buildQuery(SortedMap<String, String> fields) {
+        StringBuilder query = new StringBuilder(fields.size() * 32);
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            String value = field.getValue();
+            if (value == null || value.isEmpty()) {
+                continue;
             }
-            return hexString.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Error while calculating HMAC-SHA512", e);
+            if (!query.isEmpty()) {
+                query.append('&');
+            }
+            appendEncoded(query, field.getKey());
+            query.append('=');
+            appendEncoded(query, value);
         }
+        return query.toString();
+    }
+
+    // Giống URLEncoder.encode(value, US_ASCII): ký tự ngoài ASCII (kể cả cặp surrogate) thành '?' (%3F)
+    private static void appendEncoded(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 128 && URL_SAFE[c]) {
+                out.append(c);
+            } else if (c == ' ') {
+                out.append('+');
+            } else if (c < 128) {
+                out.append('%').append(HEX_UPPER[c >>> 4]).append(HEX_UPPER[c & 0x0f]);
+            } else {
+                if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                }
+                out.append("%3F");
+            }
+        }
+    }
+
+    /**
+     * Non-empty request parameters sorted by name, ready for {@link #verify}
+     */
+    public static TreeMap<String, String> getFields(HttpServletRequest request) {
+        TreeMap<String, String> fields = new TreeMap<>();
+        for (Map.Entry<String, String[]> param : request.getParameterMap().entrySet()) {
+            String[] values = param.getValue();
+            if (values != null && values.length > 0 && values[0] != null && !values[0].isEmpty()) {
+                fields.put(param.getKey(), values[0]);
+            }
+        }
+        return fields;
     }
 
     public static String getIpAddress(HttpServletRequest request) {
@@ -60,26 +179,4 @@ public class VNPayUtil {
         }
         return sb.toString();
     }
-
-    public String hashAllFields(Map<String, String> fields) {
-        List<String> fieldNames = new ArrayList<>(fields.keySet());
-        Collections.sort(fieldNames);
-
-        StringBuilder hashData = new StringBuilder();
-        for (String fieldName : fieldNames) {
-            String fieldValue = fields.get(fieldName);
-            if (fieldValue != null && !fieldValue.isEmpty()) {
-                // ✅ Encode lại giống khi VNPAY tạo chữ ký
-                hashData.append(fieldName)
-                        .append('=')
-                        .append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
-                hashData.append('&');
-            }
-        }
-
-        hashData.setLength(hashData.length() - 1); // remove last '&'
-        System.out.println("Hash string (encoded): " + hashData);
-        return hashData.toString();
-    }
-
 }
@@ -0,0 +1,77 @@
+package javaweb.my_project.util.jwt;
+
+import com.nimbusds.jose.*;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import javaweb.my_project.exception.AppException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Short-lived token for the payment status SSE stream. EventSource cannot send an
+ * Authorization header, so the client trades its access token for this one and passes
+ * it as a query parameter. It is bound to one order and signed with its own secret,
+ * so it is never accepted as a Bearer access token.
+ */
+@Component
+public class PaymentStreamTokenUtil {
+    private static final String ORDER_CLAIM = "orderId";
+
+    @Value("${app.jwt.payment-stream.secret:${app.jwt.access.secret}-payment-stream}")
+    private String secret;
+
+    @Value("${app.jwt.payment-stream.expiration:60000}")
+    private long expiration;
+
+    public String generateToken(String accountId, String orderId) {
+        try {
+            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                    .subject(accountId)
+                    .issuer("nongnghiepxanh.com")
+                    .issueTime(new Date())
+                    .expirationTime(new Date(System.currentTimeMillis() + expiration))
+                    .claim(ORDER_CLAIM, orderId)
+                    .build();
+            JWSObject object = new JWSObject(new JWSHeader(JWSAlgorithm.HS512), new Payload(claimsSet.toJSONObject()));
+            object.sign(new MACSigner(getSecretKey()));
+            return object.serialize();
+        } catch (JOSEException e) {
+            throw new AppException(HttpStatus.UNAUTHORIZED, "JWT error", "jwt-e-01");
+        }
+    }
+
+    /**
+     * Check signature, expiry and that the token was issued for this order
+     */
+    public void verifyToken(String token, String orderId) {
+        if (token == null || token.isEmpty()) {
+            throw new AppException(HttpStatus.UNAUTHORIZED, "User is not authenticated", "auth-e-00");
+        }
+        try {
+            SignedJWT signedJWT = SignedJWT.parse(token);
+            if (!signedJWT.verify(new MACVerifier(getSecretKey()))) {
+                throw new AppException(HttpStatus.UNAUTHORIZED, "Invalid JWT signature", "jwt-e-02");
+            }
+            JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
+            if (claimsSet.getExpirationTime() == null || new Date().after(claimsSet.getExpirationTime())) {
+                throw new AppException(HttpStatus.UNAUTHORIZED, "Token has expired", "jwt-e-03");
+            }
+            if (!orderId.equals(claimsSet.getStringClaim(ORDER_CLAIM))) {
+                throw new AppException(HttpStatus.FORBIDDEN, "Token was not issued for this order", "payment-e-05");
+            }
+        } catch (ParseException | JOSEException e) {
+            throw new AppException(HttpStatus.BAD_REQUEST, "Failed to verify JWT token", "jwt-e-04");
+        }
+    }
+
+    private byte[] getSecretKey() {
+        return Base64URL.encode(secret.getBytes()).decode();
+    }
+}
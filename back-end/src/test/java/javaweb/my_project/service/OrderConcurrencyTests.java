@@ -0,0 +1,176 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.dto.order.OrderRequest;
+import javaweb.my_project.entities.Account;
+import javaweb.my_project.entities.Address;
+import javaweb.my_project.entities.CartItem;
+import javaweb.my_project.entities.Category;
+import javaweb.my_project.entities.Farmer;
+import javaweb.my_project.entities.Product;
+import javaweb.my_project.enums.PaymentMethod;
+import javaweb.my_project.enums.ProductStatus;
+import javaweb.my_project.exception.AppException;
+import javaweb.my_project.repository.AccountRepository;
+import javaweb.my_project.repository.CartItemRepository;
+import javaweb.my_project.repository.CategoryRepository;
+import javaweb.my_project.repository.OrderRepository;
+import javaweb.my_project.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chạy nhiều checkout song song trên cùng một sản phẩm (không dùng @Transactional
+ * vì mỗi luồng phải commit giao dịch riêng).
+ */
+@SpringBootTest
+@Import(OrderFixtures.class)
+class OrderConcurrencyTests {
+	private static final int INVENTORY = 50;
+	private static final int BUYERS = 300;
+	private static final int THREADS = 32;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private CategoryRepository categoryRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private CartItemRepository cartItemRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private OrderFixtures fixtures;
+
+	private final List<String> accountIds = new ArrayList<>();
+	private String farmerId;
+	private String productId;
+	private String categoryId;
+
+	@AfterEach
+	void tearDown() {
+		transactionTemplate.executeWithoutResult(status -> {
+			orderRepository.deleteAll(orderRepository.findAllByFarmerId(farmerId, Sort.unsorted()));
+			productRepository.deleteById(productId);
+			accountRepository.deleteAllById(accountIds);
+			categoryRepository.deleteById(categoryId);
+		});
+	}
+
+	@Test
+	void parallelCheckoutsNeverOversellHotProduct() throws InterruptedException {
+		List<Buyer> buyers = transactionTemplate.execute(status -> prepareBuyers());
+
+		AtomicInteger succeeded = new AtomicInteger();
+		AtomicInteger outOfStock = new AtomicInteger();
+		List<Throwable> unexpected = new ArrayList<>();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(BUYERS);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		for (Buyer buyer : buyers) {
+			executor.submit(() -> {
+				try {
+					start.await();
+					SecurityContextHolder.getContext().setAuthentication(
+							new UsernamePasswordAuthenticationToken(buyer.accountId(), null, List.of()));
+					orderService.create(buyer.request());
+					succeeded.incrementAndGet();
+				} catch (AppException e) {
+					if ("order-e-08".equals(e.getCode())) {
+						outOfStock.incrementAndGet();
+					} else {
+						synchronized (unexpected) {
+							unexpected.add(e);
+						}
+					}
+				} catch (Throwable e) {
+					synchronized (unexpected) {
+						unexpected.add(e);
+					}
+				} finally {
+					SecurityContextHolder.clearContext();
+					done.countDown();
+				}
+			});
+		}
+		start.countDown();
+		assertTrue(done.await(2, TimeUnit.MINUTES), "Checkouts did not finish in time");
+		executor.shutdown();
+
+		assertTrue(unexpected.isEmpty(), "Unexpected failures: " + unexpected);
+		assertEquals(INVENTORY, succeeded.get());
+		assertEquals(BUYERS - INVENTORY, outOfStock.get());
+		assertEquals(0, productRepository.findById(productId).orElseThrow().getInventory());
+		assertEquals(INVENTORY, orderRepository.findAllByFarmerId(farmerId, Sort.unsorted()).size());
+	}
+
+	private record Buyer(String accountId, OrderRequest request) {
+	}
+
+	private List<Buyer> prepareBuyers() {
+		Farmer farmer = fixtures.farmer("Hot farmer");
+		accountIds.add(farmer.getAccount().getId());
+		farmerId = farmer.getId();
+		Category category = categoryRepository.save(Category.builder().name("Hot category").level(0).build());
+		categoryId = category.getId();
+		Product product = productRepository.save(Product.builder()
+				.name("Hot product")
+				.price(50000)
+				.inventory(INVENTORY)
+				.category(category)
+				.farmer(farmer)
+				.build());
+		product.setStatus(ProductStatus.ACTIVE);
+		productId = product.getId();
+
+		List<Buyer> buyers = new ArrayList<>();
+		for (int i = 0; i < BUYERS; i++) {
+			Account account = fixtures.account("buyer");
+			accountIds.add(account.getId());
+			Address address = fixtures.address(account, "Buyer " + i, "Buyer " + i);
+			CartItem cartItem = cartItemRepository.save(CartItem.builder()
+					.quantity(1)
+					.product(product)
+					.account(account)
+					.build());
+			OrderRequest.OrderItemDTO item = new OrderRequest.OrderItemDTO();
+			item.setCartItemId(cartItem.getId());
+			OrderRequest request = new OrderRequest();
+			request.setAddressId(address.getId());
+			request.setFarmerId(farmer.getId());
+			request.setPaymentMethod(PaymentMethod.COD);
+			request.setItems(List.of(item));
+			buyers.add(new Buyer(account.getId(), request));
+		}
+		return buyers;
+	}
+}
@@ -0,0 +1,73 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.entities.Account;
+import javaweb.my_project.entities.Address;
+import javaweb.my_project.entities.Farmer;
+import javaweb.my_project.entities.Order;
+import javaweb.my_project.enums.PaymentMethod;
+import javaweb.my_project.repository.AccountRepository;
+import javaweb.my_project.repository.AddressRepository;
+import javaweb.my_project.repository.FarmerRepository;
+import javaweb.my_project.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestComponent;
+
+import java.util.UUID;
+
+/**
+ * Dữ liệu mẫu dùng chung cho các test đơn hàng: tài khoản, nông dân, địa chỉ, đơn.
+ * Nạp bằng @Import(OrderFixtures.class); gọi trong giao dịch của test.
+ */
+@TestComponent
+class OrderFixtures {
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private AddressRepository addressRepository;
+
+	@Autowired
+	private FarmerRepository farmerRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	Account account(String role) {
+		return accountRepository.save(Account.builder()
+				.email(role + "-" + UUID.randomUUID() + "@test.local")
+				.build());
+	}
+
+	// Tài khoản của nông dân lấy qua farmer.getAccount() khi cần dọn dẹp
+	Farmer farmer(String name) {
+		return farmerRepository.save(Farmer.builder().name(name).account(account("farmer")).build());
+	}
+
+	Address address(Account account, String receiverName, String detail) {
+		return addressRepository.save(Address.builder()
+				.province("Cần Thơ")
+				.ward("Ninh Kiều")
+				.detail(detail)
+				.isDefault(true)
+				.receiverName(receiverName)
+				.receiverPhone("0900000000")
+				.account(account)
+				.build());
+	}
+
+	Address address(Account account) {
+		return address(account, "Buyer", "1 Đường 30/4");
+	}
+
+	Order order(Account buyer, Farmer farmer, Address address, PaymentMethod paymentMethod, int totalPrice) {
+		return orderRepository.save(Order.builder()
+				.account(buyer)
+				.farmer(farmer)
+				.address(address)
+				.paymentMethod(paymentMethod)
+				.totalPrice(totalPrice)
+				.totalQuantity(1)
+				.build());
+	}
+}
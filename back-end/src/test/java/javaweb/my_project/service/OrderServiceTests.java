@@ -0,0 +1,147 @@
+package javaweb.my_project.service;
+
+import jakarta.persistence.EntityManager;
+import javaweb.my_project.dto.order.OrderRequest;
+import javaweb.my_project.dto.order.OrderResponse;
+import javaweb.my_project.entities.Account;
+import javaweb.my_project.entities.Address;
+import javaweb.my_project.entities.CartItem;
+import javaweb.my_project.entities.Category;
+import javaweb.my_project.entities.Farmer;
+import javaweb.my_project.entities.Product;
+import javaweb.my_project.enums.PaymentMethod;
+import javaweb.my_project.enums.ProductStatus;
+import javaweb.my_project.repository.CartItemRepository;
+import javaweb.my_project.repository.CategoryRepository;
+import javaweb.my_project.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@Transactional
+@Import({OrderFixtures.class, StatementCounter.class})
+class OrderServiceTests {
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private CategoryRepository categoryRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private CartItemRepository cartItemRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private OrderFixtures fixtures;
+
+	@Autowired
+	private StatementCounter statementCounter;
+
+	private Account buyer;
+	private Address address;
+	private Farmer farmer;
+	private Category category;
+
+	@BeforeEach
+	void setUp() {
+		buyer = fixtures.account("buyer");
+		address = fixtures.address(buyer);
+		farmer = fixtures.farmer("Farmer");
+		category = categoryRepository.save(Category.builder().name("Trái cây").level(0).build());
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(buyer.getId(), null, List.of()));
+	}
+
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void checkoutStatementCountDoesNotGrowWithCartSize() {
+		long smallCart = countCheckoutStatements(2);
+		long largeCart = countCheckoutStatements(30);
+
+		assertEquals(smallCart, largeCart, "Checkout statements should not depend on the number of cart items");
+	}
+
+	@Test
+	void checkoutDecrementsInventoryAndRemovesCartItems() {
+		OrderRequest request = prepareCart(3);
+
+		OrderResponse response = orderService.create(request);
+		entityManager.flush();
+		entityManager.clear();
+
+		assertEquals(3, response.getOrderItems().size());
+		assertEquals(6, response.getTotalQuantity());
+		assertEquals(0, cartItemRepository.findAllById(request.getItems().stream()
+				.map(OrderRequest.OrderItemDTO::getCartItemId)
+				.toList()).size());
+		assertEquals(3, productRepository.findAllByFarmerIdAndStatusNot(farmer.getId(), ProductStatus.DELETED,
+				Sort.unsorted()).stream()
+				.filter(product -> product.getInventory() == 8)
+				.count());
+	}
+
+	private long countCheckoutStatements(int items) {
+		OrderRequest request = prepareCart(items);
+		// Đếm ở tầng JDBC để tính cả batch trừ tồn kho chạy qua JdbcTemplate
+		statementCounter.reset();
+
+		orderService.create(request);
+		entityManager.flush();
+
+		return statementCounter.count();
+	}
+
+	private OrderRequest prepareCart(int items) {
+		List<OrderRequest.OrderItemDTO> orderItems = new ArrayList<>();
+		for (int i = 0; i < items; i++) {
+			Product product = productRepository.save(Product.builder()
+					.name("Product " + i)
+					.price(20000)
+					.inventory(10)
+					.category(category)
+					.farmer(farmer)
+					.build());
+			product.setStatus(ProductStatus.ACTIVE);
+			CartItem cartItem = cartItemRepository.save(CartItem.builder()
+					.quantity(2)
+					.product(product)
+					.account(buyer)
+					.build());
+			OrderRequest.OrderItemDTO orderItem = new OrderRequest.OrderItemDTO();
+			orderItem.setCartItemId(cartItem.getId());
+			orderItems.add(orderItem);
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		OrderRequest request = new OrderRequest();
+		request.setAddressId(address.getId());
+		request.setFarmerId(farmer.getId());
+		request.setPaymentMethod(PaymentMethod.COD);
+		request.setItems(orderItems);
+		return request;
+	}
+}
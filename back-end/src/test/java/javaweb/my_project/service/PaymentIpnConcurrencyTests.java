@@ -0,0 +1,149 @@
+package javaweb.my_project.service;
+
+import javaweb.my_project.controller.PaymentController;
+import javaweb.my_project.entities.Account;
+import javaweb.my_project.entities.Farmer;
+import javaweb.my_project.enums.PaymentMethod;
+import javaweb.my_project.enums.PaymentStatus;
+import javaweb.my_project.repository.AccountRepository;
+import javaweb.my_project.repository.OrderRepository;
+import javaweb.my_project.repository.PaymentRepository;
+import javaweb.my_project.util.VNPayUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Gửi lại cùng một IPN thành công 100 lần cùng lúc (không dùng @Transactional
+ * vì mỗi lượt IPN phải commit giao dịch riêng).
+ */
+@SpringBootTest
+@Import(OrderFixtures.class)
+class PaymentIpnConcurrencyTests {
+	private static final int REPLAYS = 100;
+	private static final int TOTAL_PRICE = 150000;
+	private static final String TRANSACTION_NO = "14226112";
+
+	@Autowired
+	private PaymentController paymentController;
+
+	@Autowired
+	private VNPayUtil vnPayUtil;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private PaymentRepository paymentRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private OrderFixtures fixtures;
+
+	private final List<String> accountIds = new ArrayList<>();
+	private String orderId;
+
+	@AfterEach
+	void tearDown() {
+		transactionTemplate.executeWithoutResult(status -> {
+			// Payment bị xoá theo cascade của order
+			orderRepository.deleteById(orderId);
+			accountRepository.deleteAllById(accountIds);
+		});
+	}
+
+	@Test
+	void concurrentIpnReplaysConfirmOnce() throws InterruptedException {
+		orderId = transactionTemplate.execute(status -> prepareOrder());
+
+		AtomicInteger confirmed = new AtomicInteger();
+		Map<String, AtomicInteger> otherCodes = new ConcurrentHashMap<>();
+		List<Throwable> unexpected = new ArrayList<>();
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(REPLAYS);
+		ExecutorService executor = Executors.newFixedThreadPool(REPLAYS);
+		for (int i = 0; i < REPLAYS; i++) {
+			executor.submit(() -> {
+				try {
+					MockHttpServletRequest request = ipnRequest();
+					start.await();
+					Map<String, String> response = paymentController.paymentIpn(request).getBody();
+					String code = response == null ? null : response.get("RspCode");
+					if ("00".equals(code)) {
+						confirmed.incrementAndGet();
+					} else {
+						otherCodes.computeIfAbsent(String.valueOf(code), key -> new AtomicInteger()).incrementAndGet();
+					}
+				} catch (Throwable e) {
+					synchronized (unexpected) {
+						unexpected.add(e);
+					}
+				} finally {
+					done.countDown();
+				}
+			});
+		}
+		start.countDown();
+		assertTrue(done.await(2, TimeUnit.MINUTES), "IPN replays did not finish in time");
+		executor.shutdown();
+
+		assertTrue(unexpected.isEmpty(), "Unexpected failures: " + unexpected);
+		assertEquals(1, confirmed.get());
+		assertEquals(Map.of("02", REPLAYS - 1), toCounts(otherCodes));
+		assertEquals(1, paymentRepository.countByOrderId(orderId));
+		assertEquals(PaymentStatus.PAID, orderRepository.findById(orderId).orElseThrow().getPaymentStatus());
+	}
+
+	private MockHttpServletRequest ipnRequest() {
+		TreeMap<String, String> fields = new TreeMap<>();
+		fields.put("vnp_Amount", String.valueOf(TOTAL_PRICE * 100L));
+		fields.put("vnp_BankCode", "NCB");
+		fields.put("vnp_CardType", "ATM");
+		fields.put("vnp_OrderInfo", "Thanh toan don hang");
+		fields.put("vnp_ResponseCode", "00");
+		fields.put("vnp_TransactionNo", TRANSACTION_NO);
+		fields.put("vnp_TransactionStatus", "00");
+		fields.put("vnp_TxnRef", orderId);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/payments/vnpay-ipn");
+		fields.forEach(request::addParameter);
+		request.addParameter("vnp_SecureHash", vnPayUtil.sign(VNPayUtil.buildQuery(fields)));
+		return request;
+	}
+
+	private static Map<String, Integer> toCounts(Map<String, AtomicInteger> counts) {
+		Map<String, Integer> result = new TreeMap<>();
+		counts.forEach((code, count) -> result.put(code, count.get()));
+		return result;
+	}
+
+	private String prepareOrder() {
+		Farmer farmer = fixtures.farmer("IPN farmer");
+		accountIds.add(farmer.getAccount().getId());
+		Account buyer = fixtures.account("buyer");
+		accountIds.add(buyer.getId());
+		return fixtures.order(buyer, farmer, fixtures.address(buyer), PaymentMethod.VNPAY, TOTAL_PRICE).getId();
+	}
+}
@@ -0,0 +1,192 @@
+package javaweb.my_project.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import javaweb.my_project.entities.Account;
+import javaweb.my_project.entities.Address;
+import javaweb.my_project.entities.Farmer;
+import javaweb.my_project.enums.PaymentMethod;
+import javaweb.my_project.enums.PaymentStatus;
+import javaweb.my_project.repository.AccountRepository;
+import javaweb.my_project.repository.OrderRepository;
+import javaweb.my_project.repository.PaymentRepository;
+import javaweb.my_project.util.VNPayUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Đối soát chạy với một server querydr giả trên localhost thay cho sandbox VNPAY
+ */
+@SpringBootTest
+@Import(OrderFixtures.class)
+class PaymentReconciliationTests {
+	private static final int TOTAL_PRICE = 120000;
+	// Đơn của test được đánh dấu yêu cầu thanh toán ~100 năm sau; cửa sổ đối soát chỉ phủ quanh mốc đó
+	// nên không đụng tới đơn PENDING nào khác trong DB dùng chung
+	private static final long FUTURE_DAYS = 36500;
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	// vnp_TxnRef -> {vnp_ResponseCode, vnp_TransactionStatus}; ref không có thì server trả HTTP 500
+	private static final Map<String, String[]> ANSWERS = new ConcurrentHashMap<>();
+	private static final HttpServer STUB = startStub();
+	private static volatile VNPayUtil signer;
+
+	@DynamicPropertySource
+	static void stubProperties(DynamicPropertyRegistry registry) {
+		registry.add("app.vnpay.query-url",
+				() -> "http://localhost:" + STUB.getAddress().getPort() + "/merchant_webapi/api/transaction");
+		// Lượt chạy theo lịch không được chen vào giữa test
+		registry.add("app.reconciliation.initial-delay-ms", () -> "3600000");
+		registry.add("app.reconciliation.requests-per-second", () -> "100");
+		// [now - maxAge, now - grace) = [now + FUTURE_DAYS - 1 ngày, now + FUTURE_DAYS + 1 ngày)
+		registry.add("app.reconciliation.max-age-days", () -> String.valueOf(-(FUTURE_DAYS - 1)));
+		registry.add("app.reconciliation.grace-minutes", () -> String.valueOf(-(FUTURE_DAYS + 1) * 24 * 60));
+	}
+
+	@Autowired
+	private PaymentReconciliationService paymentReconciliationService;
+
+	@Autowired
+	private VNPayUtil vnPayUtil;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private PaymentRepository paymentRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private OrderFixtures fixtures;
+
+	private final List<String> accountIds = new ArrayList<>();
+	private final List<String> orderIds = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		signer = vnPayUtil;
+	}
+
+	@AfterEach
+	void tearDown() {
+		ANSWERS.clear();
+		transactionTemplate.executeWithoutResult(status -> {
+			orderRepository.deleteAllById(orderIds);
+			accountRepository.deleteAllById(accountIds);
+		});
+	}
+
+	@AfterAll
+	static void stopStub() {
+		STUB.stop(0);
+	}
+
+	@Test
+	void reconcileAppliesQuerydrResults() {
+		List<String> ids = transactionTemplate.execute(status -> prepareOrders(3));
+		String paid = ids.get(0);
+		String notFound = ids.get(1);
+		String unreachable = ids.get(2);
+		ANSWERS.put(paid, new String[]{"00", "00"});
+		ANSWERS.put(notFound, new String[]{"91", ""});
+
+		// Chỉ 3 đơn của test nằm trong cửa sổ đối soát
+		assertEquals(3, paymentReconciliationService.reconcile());
+
+		assertEquals(PaymentStatus.PAID, orderRepository.findById(paid).orElseThrow().getPaymentStatus());
+		assertEquals(1, paymentRepository.countByOrderId(paid));
+		assertEquals(PaymentStatus.FAILED, orderRepository.findById(notFound).orElseThrow().getPaymentStatus());
+		// Lỗi tra cứu: giữ nguyên để lượt sau thử lại
+		assertEquals(PaymentStatus.PENDING, orderRepository.findById(unreachable).orElseThrow().getPaymentStatus());
+	}
+
+	private static HttpServer startStub() {
+		try {
+			HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			server.createContext("/merchant_webapi/api/transaction", PaymentReconciliationTests::answer);
+			server.start();
+			return server;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void answer(HttpExchange exchange) throws IOException {
+		Map<String, String> request = MAPPER.readValue(exchange.getRequestBody(), new TypeReference<>() {
+		});
+		String txnRef = request.get("vnp_TxnRef");
+		String[] answer = ANSWERS.get(txnRef);
+		if (answer == null) {
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+			return;
+		}
+		Map<String, String> response = new LinkedHashMap<>();
+		response.put("vnp_ResponseId", UUID.randomUUID().toString().replace("-", ""));
+		response.put("vnp_Command", "querydr");
+		response.put("vnp_ResponseCode", answer[0]);
+		response.put("vnp_Message", "stub");
+		response.put("vnp_TmnCode", request.getOrDefault("vnp_TmnCode", ""));
+		response.put("vnp_TxnRef", txnRef);
+		response.put("vnp_Amount", "00".equals(answer[0]) ? String.valueOf(TOTAL_PRICE * 100L) : "");
+		response.put("vnp_BankCode", "NCB");
+		response.put("vnp_PayDate", request.getOrDefault("vnp_CreateDate", ""));
+		response.put("vnp_TransactionNo", "00".equals(answer[0]) ? "14300001" : "");
+		response.put("vnp_TransactionType", "01");
+		response.put("vnp_TransactionStatus", answer[1]);
+		response.put("vnp_OrderInfo", "Thanh toan don hang");
+		response.put("vnp_PromotionCode", "");
+		response.put("vnp_PromotionAmount", "");
+		response.put("vnp_SecureHash", signer.sign(String.join("|", response.values())));
+
+		byte[] body = MAPPER.writeValueAsBytes(response);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private List<String> prepareOrders(int count) {
+		Farmer farmer = fixtures.farmer("Reconcile farmer");
+		accountIds.add(farmer.getAccount().getId());
+		Account buyer = fixtures.account("buyer");
+		accountIds.add(buyer.getId());
+		Address address = fixtures.address(buyer);
+		for (int i = 0; i < count; i++) {
+			orderIds.add(fixtures.order(buyer, farmer, address, PaymentMethod.VNPAY, TOTAL_PRICE).getId());
+		}
+		orderRepository.flush();
+		orderRepository.markPaymentRequested(orderIds,
+				LocalDateTime.now(VNPayUtil.ZONE).plusDays(FUTURE_DAYS).withNano(0));
+		return List.copyOf(orderIds);
+	}
+}
@@ -0,0 +1,82 @@
+package javaweb.my_project.service;
+
+import jakarta.persistence.EntityManager;
+import javaweb.my_project.dto.product.ProductTagResponse;
+import javaweb.my_project.entities.Category;
+import javaweb.my_project.entities.Farmer;
+import javaweb.my_project.entities.Ocop;
+import javaweb.my_project.entities.Product;
+import javaweb.my_project.enums.OcopStatus;
+import javaweb.my_project.enums.ProductStatus;
+import javaweb.my_project.repository.CategoryRepository;
+import javaweb.my_project.repository.ProductRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Transactional
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(OrderFixtures.class)
+class ProductServiceTests {
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private CategoryRepository categoryRepository;
+
+	@Autowired
+	private OrderFixtures fixtures;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void listingPageIsLoadedInConstantStatements() {
+		Category category = categoryRepository.save(Category.builder().name("Rau củ").level(0).build());
+		for (int f = 0; f < 3; f++) {
+			Farmer farmer = fixtures.farmer("Farmer " + f);
+			for (int i = 0; i < 4; i++) {
+				Product product = Product.builder()
+						.name("Product " + f + "-" + i)
+						.price(10000)
+						.inventory(10)
+						.category(category)
+						.farmer(farmer)
+						.build();
+				if (i % 2 == 0) {
+					product.setOcop(Ocop.builder().star(4).status(OcopStatus.VERIFIED).product(product).build());
+				}
+				productRepository.save(product);
+				product.setStatus(ProductStatus.ACTIVE);
+			}
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		Page<ProductTagResponse> page = productService.getAllActiveProduct(0, 12);
+
+		assertEquals(12, page.getNumberOfElements());
+		assertTrue(page.getContent().stream().allMatch(product -> product.getFarmer() != null));
+		// 1 câu SELECT cho trang (kèm farmer + OCOP) + 1 câu COUNT, không phụ thuộc số card
+		assertTrue(statistics.getPrepareStatementCount() <= 2,
+				"Expected at most 2 statements per page but was " + statistics.getPrepareStatementCount());
+	}
+
+}
@@ -0,0 +1,56 @@
+package javaweb.my_project.service;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestComponent;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts statements executed against the DataSource, including plain JDBC
+ * (JdbcTemplate) that Hibernate statistics do not see. One executeBatch counts once.
+ * Only the thread that called {@link #reset()} is counted, so scheduled jobs do not interfere.
+ * Nạp bằng @Import(StatementCounter.class).
+ */
+@TestComponent
+class StatementCounter implements BeanPostProcessor, QueryExecutionListener {
+
+	private final AtomicLong executions = new AtomicLong();
+	private volatile Thread countedThread;
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource dataSource) {
+			return ProxyDataSourceBuilder.create(dataSource)
+					.name(beanName)
+					.listener(this)
+					.build();
+		}
+		return bean;
+	}
+
+	@Override
+	public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+	}
+
+	@Override
+	public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		if (Thread.currentThread() == countedThread) {
+			executions.incrementAndGet();
+		}
+	}
+
+	void reset() {
+		countedThread = Thread.currentThread();
+		executions.set(0);
+	}
+
+	long count() {
+		return executions.get();
+	}
+}
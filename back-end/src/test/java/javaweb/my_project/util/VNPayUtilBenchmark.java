@@ -0,0 +1,162 @@
+package javaweb.my_project.util;
+
+import javaweb.my_project.config.VNPayConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing a VNPAY return/IPN query: the previous implementation (new Mac per call,
+ * Integer.toHexString, copy + sort of the keys) against the cached per-thread Mac,
+ * table-driven hex and single-pass canonical query.
+ * <p>
+ * Run in a separate JVM so the @Fork child inherits the test classpath
+ * (exec:java runs in Maven's JVM, where java.class.path does not contain it):
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main VNPayUtilBenchmark"
+ * </pre>
+ * Running main from the IDE works too, since the IDE starts a plain JVM with the test classpath.
+ * <p>
+ * Measured with JMH 1.37 on JDK 21.0.1, one CPU only (multi-core results not measured yet):
+ * <pre>
+ * -f 3 -t 1   legacySign      198389 ±  13397 ops/s
+ *             cachedSign      209353 ±  46506 ops/s
+ * -f 1 -t 4   legacyHexOnly  1024769 ± 199322 ops/s
+ *             tableHexOnly  10442552 ± 5968572 ops/s
+ * </pre>
+ * The hex encoding is clearly faster; the full signing path shows no gain beyond the error,
+ * so no signing speedup is claimed until a multi-core run shows one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class VNPayUtilBenchmark {
+
+	private static final String SECRET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ012345";
+
+	private VNPayUtil vnPayUtil;
+	private Map<String, String> hashMapFields;
+	private TreeMap<String, String> sortedFields;
+
+	@Setup
+	public void setUp() {
+		VNPayConfig config = new VNPayConfig();
+		ReflectionTestUtils.setField(config, "hashSecret", SECRET);
+		vnPayUtil = new VNPayUtil(config);
+
+		hashMapFields = new HashMap<>();
+		hashMapFields.put("vnp_Amount", "15000000");
+		hashMapFields.put("vnp_BankCode", "NCB");
+		hashMapFields.put("vnp_BankTranNo", "VNP14226112");
+		hashMapFields.put("vnp_CardType", "ATM");
+		hashMapFields.put("vnp_OrderInfo", "Thanh toan don hang");
+		hashMapFields.put("vnp_PayDate", "20240101120000");
+		hashMapFields.put("vnp_ResponseCode", "00");
+		hashMapFields.put("vnp_TmnCode", "DEMO0001");
+		hashMapFields.put("vnp_TransactionNo", "14226112");
+		hashMapFields.put("vnp_TransactionStatus", "00");
+		hashMapFields.put("vnp_TxnRef", "6f1c3e2a-9b7d-4c1e-8f5a-2d3b4c5e6f70");
+		hashMapFields.put("vnp_ReturnUrl", "https://example.com/payment/return?source=app&lang=vi");
+		sortedFields = new TreeMap<>(hashMapFields);
+
+		// Hai cách phải cho cùng chữ ký, nếu không thì so sánh throughput không có ý nghĩa
+		if (!legacySign().equals(cachedSign())) {
+			throw new IllegalStateException("Cached signing does not match the previous implementation");
+		}
+	}
+
+	@Benchmark
+	public String legacySign() {
+		return legacyHmacSHA512(SECRET, legacyHashAllFields(hashMapFields));
+	}
+
+	@Benchmark
+	public String cachedSign() {
+		return vnPayUtil.sign(VNPayUtil.buildQuery(sortedFields));
+	}
+
+	@Benchmark
+	public String legacyHexOnly() {
+		return legacyHex(HASH);
+	}
+
+	@Benchmark
+	public String tableHexOnly() {
+		return VNPayUtil.toHex(HASH);
+	}
+
+	private static final byte[] HASH = new byte[64];
+
+	static {
+		new Random(42).nextBytes(HASH);
+	}
+
+	private static String legacyHmacSHA512(String key, String data) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA512");
+			mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+			return legacyHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String legacyHex(byte[] hash) {
+		StringBuilder hexString = new StringBuilder();
+		for (byte b : hash) {
+			String hex = Integer.toHexString(0xff & b);
+			if (hex.length() == 1) {
+				hexString.append('0');
+			}
+			hexString.append(hex);
+		}
+		return hexString.toString();
+	}
+
+	private static String legacyHashAllFields(Map<String, String> fields) {
+		List<String> fieldNames = new ArrayList<>(fields.keySet());
+		Collections.sort(fieldNames);
+		StringBuilder hashData = new StringBuilder();
+		for (String fieldName : fieldNames) {
+			String fieldValue = fields.get(fieldName);
+			if (fieldValue != null && !fieldValue.isEmpty()) {
+				hashData.append(fieldName)
+						.append('=')
+						.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
+				hashData.append('&');
+			}
+		}
+		hashData.setLength(hashData.length() - 1);
+		return hashData.toString();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(VNPayUtilBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
@@ -28,6 +28,7 @@ import {
 import type { IOrderResponse } from "@/types/order";
 import OrderService from "@/services/order.service";
 import AddressService from "@/services/address.service";
+import { usePaymentStatusStream } from "@/hooks/usePaymentStatusStream";
 
 const statusConfig = {
   PENDING: {
@@ -123,6 +124,14 @@ export default function OrderDetailPage() {
     fetchOrder();
   }, [params.id, router]);
 
+  // Đơn VNPAY đang chờ: cập nhật trạng thái thanh toán ngay khi IPN được xác nhận
+  usePaymentStatusStream(
+    order?.id,
+    order?.paymentMethod === "VNPAY" && order?.paymentStatus === "PENDING",
+    (paymentStatus) =>
+      setOrder((prev) => (prev ? { ...prev, paymentStatus } : prev))
+  );
+
   const handleCancelOrder = async () => {
     if (!order) return;
     if (!reason.trim()) {
@@ -31,6 +31,7 @@ import { IAddressResponse } from "@/types/address";
 import AddressService from "@/services/address.service"; // Added import for AddressService
 import { useSearchParams } from "next/navigation";
 import PaymentService from "@/services/payment.service";
+import { usePaymentStatusStream } from "@/hooks/usePaymentStatusStream";
 
 interface OrderData {
   orderNumbers: string[];
@@ -116,6 +117,16 @@ export default function OrderCompletePage() {
     }
   }, [searchParams]);
 
+  // Chưa có kết quả từ VNPAY return: chờ IPN qua SSE thay vì để trạng thái đứng yên
+  usePaymentStatusStream(
+    orderData?.orderNumbers[0],
+    orderData?.paymentMethod === "VNPAY" &&
+      orderData?.paymentStatus === "PENDING" &&
+      !loading,
+    (paymentStatus) =>
+      setOrderData((prev) => (prev ? { ...prev, paymentStatus } : prev))
+  );
+
   const getOrderId = (orderNumbers: string[]) => {
     return orderNumbers.map((num) => `ORDER_${num.slice(0, 8)}`).join(", ");
   };
@@ -72,6 +72,7 @@ export default function AdminDashboard() {
   const [accounts, setAccounts] = useState<IAccountResponse[]>([]);
   const [farmers, setFarmers] = useState<IFarmerResponse[]>([]);
   const [products, setProducts] = useState<IProductResponse[]>([]);
+  const [productTotal, setProductTotal] = useState(0);
   const [orders, setOrders] = useState<IOrderResponse[]>([]);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
@@ -87,7 +88,8 @@ export default function AdminDashboard() {
         ] = await Promise.all([
           AccountService.getAllAccounts(),
           FarmerService.getAllFarmers(),
-          ProductService.getAllByAdmin(),
+          // Trang mới nhất cho biểu đồ và danh sách gần đây, tổng số lấy từ totalElements
+          ProductService.getAllByAdmin({ size: 100 }),
           OrderService.getAllOrders(),
         ]);
 
@@ -101,7 +103,10 @@ export default function AdminDashboard() {
 
         setAccounts(accountsData || []);
         setFarmers(farmersData || []);
-        setProducts(productsData || []);
+        setProducts(productsData?.content || []);
+        setProductTotal(
+          productsData?.totalElements ?? productsData?.content?.length ?? 0
+        );
         setOrders(ordersData || []);
       } catch (err) {
         setError("Failed to fetch data.");
@@ -214,7 +219,7 @@ export default function AdminDashboard() {
         />
         <StatsCard
           title="Tổng sản phẩm"
-          value={products.length.toLocaleString()}
+          value={productTotal.toLocaleString()}
           description="Tổng số sản phẩm trong hệ thống"
           trend="neutral"
           icon={<Package className="h-4 w-4" />}
@@ -1,11 +1,11 @@
 "use client";
 
-import React, { useEffect, useState, useMemo } from "react";
+import React, { useEffect, useState } from "react";
+import { useDebounce } from "use-debounce";
 import {
   ColumnDef,
   flexRender,
   getCoreRowModel,
-  getPaginationRowModel,
   getSortedRowModel,
   useReactTable,
   SortingState,
@@ -56,6 +56,8 @@ const STATUS: Record<string, string> = {
   DELETED: "Đã xóa",
 };
 
+const PAGE_SIZE = 20;
+
 const ProductListPage = () => {
   const { toast } = useToast();
   const [products, setProducts] = useState<IProductAdminResponse[]>([]);
@@ -71,14 +73,33 @@ const ProductListPage = () => {
     useState<IProductAdminResponse | null>(null);
   const [newStatus, setNewStatus] = useState<ProductStatus | "">("");
   const [isDialogOpen, setIsDialogOpen] = useState(false); // Thêm state để quản lý việc mở/đóng dialog
+  // Phân trang và lọc phía server
+  const [page, setPage] = useState(0);
+  const [totalPages, setTotalPages] = useState(0);
+  const [totalElements, setTotalElements] = useState(0);
+  const [fetching, setFetching] = useState(false);
+  const [debouncedKeyword] = useDebounce(globalFilter, 500);
+
+  // Đổi bộ lọc thì quay về trang đầu
+  useEffect(() => {
+    setPage(0);
+  }, [debouncedKeyword, statusFilter]);
 
   useEffect(() => {
     const fetchProducts = async () => {
       try {
-        setLoading(true);
-        const [result, err] = await ProductService.getAllByAdmin();
+        setFetching(true);
+        const [result, err] = await ProductService.getAllByAdmin({
+          page,
+          size: PAGE_SIZE,
+          status: statusFilter === "ALL" ? undefined : statusFilter,
+          keyword: debouncedKeyword.trim(),
+        });
         if (result) {
-          setProducts(result);
+          setProducts(result.content || []);
+          setTotalPages(result.totalPages ?? 0);
+          setTotalElements(result.totalElements ?? 0);
+          setError(null);
         } else {
           setError(err?.message || "Failed to fetch products.");
         }
@@ -86,11 +107,12 @@ const ProductListPage = () => {
         setError(err?.message || "Failed to fetch products.");
         console.error(err);
       } finally {
+        setFetching(false);
         setLoading(false);
       }
     };
     fetchProducts();
-  }, []);
+  }, [page, debouncedKeyword, statusFilter]);
 
   const handleStatusChange = async () => {
     if (!selectedProduct || !newStatus) return;
@@ -140,32 +162,6 @@ const ProductListPage = () => {
     setNewStatus("");
   };
 
-  const filteredProducts = useMemo(() => {
-    let filtered = products;
-
-    // Global filter (search by name, description, farmer name, category name)
-    if (globalFilter) {
-      filtered = filtered.filter(
-        (product) =>
-          product.name.toLowerCase().includes(globalFilter.toLowerCase()) ||
-          product.description
-            .toLowerCase()
-            .includes(globalFilter.toLowerCase()) ||
-          product.farmer.name
-            .toLowerCase()
-            .includes(globalFilter.toLowerCase()) ||
-          product.category.toLowerCase().includes(globalFilter.toLowerCase())
-      );
-    }
-
-    // Status filter
-    if (statusFilter !== "ALL") {
-      filtered = filtered.filter((product) => product.status === statusFilter);
-    }
-
-    return filtered;
-  }, [products, globalFilter, statusFilter]);
-
   const columns: ColumnDef<IProductAdminResponse>[] = [
     {
       accessorKey: "name",
@@ -304,19 +300,16 @@ const ProductListPage = () => {
   ];
 
   const table = useReactTable({
-    data: filteredProducts,
+    data: products,
     columns,
     state: {
       sorting,
       columnFilters,
-      globalFilter,
     },
     onSortingChange: setSorting,
     onColumnFiltersChange: setColumnFilters,
-    onGlobalFilterChange: setGlobalFilter,
     getCoreRowModel: getCoreRowModel(),
     getSortedRowModel: getSortedRowModel(),
-    getPaginationRowModel: getPaginationRowModel(),
   });
 
   if (loading) {
@@ -335,7 +328,7 @@ const ProductListPage = () => {
     <div className="container mx-auto py-2">
       <div className="flex items-center justify-between mb-4">
         <Input
-          placeholder="Tìm kiếm sản phẩm..."
+          placeholder="Tìm theo tên sản phẩm..."
           value={globalFilter ?? ""}
           onChange={(event) => setGlobalFilter(event.target.value)}
           className="max-w-sm"
@@ -418,19 +411,23 @@ const ProductListPage = () => {
       </div>
 
       <div className="flex items-center justify-end space-x-2 py-4">
+        <span className="text-sm text-muted-foreground">
+          Trang {totalPages === 0 ? 0 : page + 1} / {totalPages} ·{" "}
+          {totalElements.toLocaleString()} sản phẩm
+        </span>
         <Button
           variant="outline"
           size="sm"
-          onClick={() => table.previousPage()}
-          disabled={!table.getCanPreviousPage()}
+          onClick={() => setPage((current) => Math.max(0, current - 1))}
+          disabled={fetching || page === 0}
         >
           Trước
         </Button>
         <Button
           variant="outline"
           size="sm"
-          onClick={() => table.nextPage()}
-          disabled={!table.getCanNextPage()}
+          onClick={() => setPage((current) => current + 1)}
+          disabled={fetching || page + 1 >= totalPages}
         >
           Sau
         </Button>
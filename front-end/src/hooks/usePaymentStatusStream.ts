@@ -0,0 +1,44 @@
+import { useEffect, useRef } from "react";
+import PaymentService from "@/services/payment.service";
+import { IPaymentStatus } from "@/types/order";
+
+// Nhận trạng thái thanh toán qua SSE thay cho việc poll; server đóng stream khi hết PENDING
+export const usePaymentStatusStream = (
+  orderId: string | undefined,
+  enabled: boolean,
+  onStatus: (status: IPaymentStatus) => void
+) => {
+  const onStatusRef = useRef(onStatus);
+  onStatusRef.current = onStatus;
+
+  useEffect(() => {
+    if (!orderId || !enabled) return;
+    let source: EventSource | null = null;
+    let cancelled = false;
+
+    const open = async () => {
+      const [token, error] = await PaymentService.createStatusStreamToken(
+        orderId
+      );
+      if (error || !token || cancelled) return;
+      source = new EventSource(
+        PaymentService.getStatusStreamUrl(orderId, token as string)
+      );
+      source.addEventListener("payment-status", (event) => {
+        const status = (event as MessageEvent).data as IPaymentStatus;
+        onStatusRef.current(status);
+        if (status !== "PENDING") {
+          source?.close();
+        }
+      });
+      // Token chỉ dùng được một lúc, không để EventSource tự kết nối lại bằng token cũ
+      source.onerror = () => source?.close();
+    };
+    open();
+
+    return () => {
+      cancelled = true;
+      source?.close();
+    };
+  }, [orderId, enabled]);
+};
@@ -13,7 +13,19 @@ const PaymentService = {
       axios.get(getApiUrl(`/payments/vnpay-return`), { params }),
       true
     );
-  }
+  },
+  createStatusStreamToken(orderId: string) {
+    return service(
+      axios.post(getApiUrl(`/payments/order/${orderId}/status/stream-token`)),
+      true
+    );
+  },
+  // EventSource không gửi được header Authorization nên dùng token ngắn hạn trên query
+  getStatusStreamUrl(orderId: string, token: string) {
+    return getApiUrl(
+      `/payments/order/${orderId}/status/stream?token=${encodeURIComponent(token)}`
+    );
+  },
 };
 
 export default PaymentService;
\ No newline at end of file
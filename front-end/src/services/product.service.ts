@@ -15,9 +15,29 @@ const ProductService = {
     return service(axios.post(getApiUrl("/products"), data), true);
   },
 
-  // Lấy tất cả sản phẩm (ADMIN)
-  getAllByAdmin() {
-    return service(axios.get(getApiUrl("/products/admin")), true);
+  // Lấy sản phẩm theo trang, lọc phía server (ADMIN)
+  getAllByAdmin({
+    page = 0,
+    size = 20,
+    status,
+    keyword,
+  }: {
+    page?: number;
+    size?: number;
+    status?: string;
+    keyword?: string;
+  } = {}) {
+    return service(
+      axios.get(getApiUrl("/products/admin"), {
+        params: {
+          page,
+          size,
+          status: status || undefined,
+          keyword: keyword || undefined,
+        },
+      }),
+      true
+    );
   },
 
   // Lấy sản phẩm của farmer hiện tại (FARMER)